@@ -0,0 +1,308 @@
+package gui;
+
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+
+import javax.swing.Timer;
+
+import gui.util.Easing;
+import gui.util.LatencyHistogram;
+
+/**
+ * Animates components between bounds, e.g. two <code>Positioner</code>
+ * results, all on one Swing timer. For example
+ *
+ * <pre>
+ * Animator animator = new Animator();
+ * ...
+ * // Slide the details panel under the list
+ * animator.animate(details, Positioner.under(list), 250, Easing.EASE_OUT);
+ * </pre>
+ *
+ * Animations are kept in parallel primitive arrays (removing one moves the last
+ * into its place), and a tick allocates nothing: it interpolates every
+ * animation and calls <code>setBounds</code> only on components whose bounds
+ * change. Swing's <code>RepaintManager</code> already merges the repaints
+ * those calls cause into one dirty region per window, painted once after the
+ * tick. The timer only runs while something is animating.
+ * <p>
+ * Components should be in containers without a layout manager (as with
+ * <code>Positioner</code>), or the next validation moves them back. Should be
+ * used on the EDT
+ */
+public class Animator {
+    /**
+     * Default maximum number of ticks per second
+     */
+    public static final int DEFAULT_RATE = 60;
+
+    private final Timer timer;
+
+    /**
+     * Active animations, by index
+     */
+    private Component[] components = new Component[16];
+    private int[] from = new int[4 * 16];
+    private int[] to = new int[4 * 16];
+    private long[] starts = new long[16];
+    private long[] durations = new long[16];
+    private Easing[] easings = new Easing[16];
+    private Runnable[] onDone = new Runnable[16];
+    private int size;
+    /**
+     * Index of each component's animation (in a one-element array, so swapping
+     * an animation into a new place doesn't box)
+     */
+    private final IdentityHashMap<Component, int[]> index = new IdentityHashMap<>();
+
+    private long ticks;
+    private final LatencyHistogram tickLatency = new LatencyHistogram();
+
+    /**
+     * @param maxRate Maximum number of ticks per second
+     */
+    public Animator(int maxRate) {
+        timer = new Timer(delayOf(maxRate), new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                tick();
+            }
+        });
+        timer.setCoalesce(true);
+    }
+
+    public Animator() {
+        this(DEFAULT_RATE);
+    }
+
+    /**
+     * @param comp   Component to move
+     * @param target Bounds to end at
+     * @param millis Duration
+     * @param easing How to move
+     */
+    public void animate(Component comp, Rectangle target, int millis, Easing easing) {
+        animate(comp, comp.getBounds(), target, millis, easing, null);
+    }
+
+    /**
+     * Animate a component, replacing any animation it already has. The
+     * replaced animation is cancelled: its <code>done</code> isn't run, as
+     * the component never gets to its target
+     *
+     * @param comp   Component to move
+     * @param start  Bounds to start at
+     * @param target Bounds to end at
+     * @param millis Duration
+     * @param easing How to move
+     * @param done   Run (on the EDT) once the component is at target, or
+     *               <code>null</code>
+     */
+    public void animate(Component comp, Rectangle start, Rectangle target, int millis, Easing easing, Runnable done) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Duration can't be negative: " + millis);
+        }
+        int[] existing = index.get(Objects.requireNonNull(comp));
+        int i;
+        if (existing != null) {
+            // Cancel it in place (done is overwritten below, not run)
+            i = existing[0];
+        } else {
+            ensureCapacity(size + 1);
+            i = size++;
+            index.put(comp, new int[] { i });
+        }
+
+        components[i] = comp;
+        set(from, i, start);
+        set(to, i, target);
+        starts[i] = System.nanoTime();
+        durations[i] = millis * 1_000_000L;
+        easings[i] = Objects.requireNonNull(easing);
+        onDone[i] = done;
+
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Stop animating a component, leaving it where it is. Its
+     * <code>done</code> isn't run
+     *
+     * @param comp Component to stop
+     * @return Whether it was animating
+     */
+    public boolean cancel(Component comp) {
+        int[] i = index.get(comp);
+        if (i == null) {
+            return false;
+        }
+        remove(i[0]);
+        return true;
+    }
+
+    /**
+     * Move every animating component to its target now
+     */
+    public void finishAll() {
+        while (size > 0) {
+            finish(size - 1);
+        }
+    }
+
+    /**
+     * @param maxRate Maximum number of ticks per second
+     */
+    public void setMaxRate(int maxRate) {
+        timer.setDelay(delayOf(maxRate));
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @param comp Component
+     * @return Whether comp is animating
+     */
+    public boolean isAnimating(Component comp) {
+        return index.containsKey(comp);
+    }
+
+    /**
+     * @return Number of active animations
+     */
+    public int active() {
+        return size;
+    }
+
+    /**
+     * @return Number of ticks so far
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * @return Time taken by each tick
+     */
+    public LatencyHistogram tickLatency() {
+        return tickLatency;
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * One frame: move every component, and finish animations that are done
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        ticks++;
+
+        // Backwards, so finishing (which moves the last animation here) never
+        // skips one
+        for (int i = size - 1; i >= 0; i--) {
+            long elapsed = now - starts[i];
+            if (elapsed >= durations[i]) {
+                finish(i);
+                continue;
+            }
+
+            double f = easings[i].apply(elapsed / (double) durations[i]);
+            int k = 4 * i;
+            move(components[i], lerp(from[k], to[k], f), lerp(from[k + 1], to[k + 1], f),
+                    lerp(from[k + 2], to[k + 2], f), lerp(from[k + 3], to[k + 3], f));
+        }
+
+        if (size == 0) {
+            timer.stop();
+        }
+        tickLatency.record(System.nanoTime() - now);
+    }
+
+    /**
+     * Put animation i's component at its target and remove the animation
+     */
+    private void finish(int i) {
+        int k = 4 * i;
+        move(components[i], to[k], to[k + 1], to[k + 2], to[k + 3]);
+        Runnable done = onDone[i];
+        remove(i);
+        if (done != null) {
+            done.run();
+        }
+    }
+
+    /**
+     * Remove animation i, moving the last one into its place
+     */
+    private void remove(int i) {
+        index.remove(components[i]);
+        int last = --size;
+        if (i != last) {
+            components[i] = components[last];
+            System.arraycopy(from, 4 * last, from, 4 * i, 4);
+            System.arraycopy(to, 4 * last, to, 4 * i, 4);
+            starts[i] = starts[last];
+            durations[i] = durations[last];
+            easings[i] = easings[last];
+            onDone[i] = onDone[last];
+            index.get(components[i])[0] = i;
+        }
+        components[last] = null;
+        easings[last] = null;
+        onDone[last] = null;
+    }
+
+    /**
+     * setBounds, unless the component is already there
+     */
+    private static void move(Component comp, int x, int y, int width, int height) {
+        if (comp.getX() != x || comp.getY() != y || comp.getWidth() != width || comp.getHeight() != height) {
+            comp.setBounds(x, y, width, height);
+        }
+    }
+
+    private static int lerp(int a, int b, double f) {
+        return a + (int) Math.round((b - a) * f);
+    }
+
+    private static void set(int[] dest, int i, Rectangle r) {
+        dest[4 * i] = r.x;
+        dest[4 * i + 1] = r.y;
+        dest[4 * i + 2] = r.width;
+        dest[4 * i + 3] = r.height;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > components.length) {
+            int n = Math.max(capacity, components.length * 2);
+            components = Arrays.copyOf(components, n);
+            from = Arrays.copyOf(from, 4 * n);
+            to = Arrays.copyOf(to, 4 * n);
+            starts = Arrays.copyOf(starts, n);
+            durations = Arrays.copyOf(durations, n);
+            easings = Arrays.copyOf(easings, n);
+            onDone = Arrays.copyOf(onDone, n);
+        }
+    }
+
+    /**
+     * @param rate Ticks per second
+     * @return Timer delay in milliseconds
+     */
+    private static int delayOf(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+        return Math.max(1, 1000 / rate);
+    }
+}
@@ -0,0 +1,546 @@
+package gui;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * Turns text with ANSI escape sequences (as printed by compilers, test runners,
+ * <code>ls --color</code> ...) into plain text plus style runs, for
+ * <code>DrawString.drawAnsi</code>.
+ * <p>
+ * Text can be appended in chunks of any size, even splitting an escape
+ * sequence; the parser picks up where it left off. SGR sequences
+ * (<code>ESC[...m</code>: bold, italic, underline, 16/256/24-bit foreground and
+ * background colors, resets) set the style. Every other escape sequence is
+ * dropped. Cursor controls (<code>\r</code>, <code>\b</code>,
+ * <code>\f</code>) stay in the text; <code>drawAnsi</code> applies them. For
+ * example
+ *
+ * <pre>
+ * AnsiParser output = new AnsiParser();
+ * output.append(chunkFromProcess);
+ * ...
+ * // In paintComponent
+ * drawer.drawAnsi(output, 10, 20);
+ * </pre>
+ *
+ * Runs are stored as (offset, length, style id) triples in one
+ * <code>int[]</code>; equal styles share one <code>Style</code> and id. Not
+ * thread-safe
+ */
+public class AnsiParser {
+    private static final char ESC = '\u001B';
+    private static final char BEL = '\u0007';
+
+    /**
+     * The 16 standard colors (xterm defaults)
+     */
+    private static final Color[] PALETTE = {
+        new Color(0, 0, 0), new Color(205, 0, 0), new Color(0, 205, 0), new Color(205, 205, 0),
+        new Color(0, 0, 238), new Color(205, 0, 205), new Color(0, 205, 205), new Color(229, 229, 229),
+        new Color(127, 127, 127), new Color(255, 0, 0), new Color(0, 255, 0), new Color(255, 255, 0),
+        new Color(92, 92, 255), new Color(255, 0, 255), new Color(0, 255, 255), new Color(255, 255, 255),
+    };
+
+    /**
+     * Parser states
+     */
+    private static final int TEXT = 0;
+    /**
+     * After ESC
+     */
+    private static final int ESCAPE = 1;
+    /**
+     * In <code>ESC[</code> ... final byte
+     */
+    private static final int CSI = 2;
+    /**
+     * In <code>ESC]</code> ... BEL or <code>ESC\</code>
+     */
+    private static final int OSC = 3;
+    /**
+     * ESC inside an OSC (maybe the start of <code>ESC\</code>)
+     */
+    private static final int OSC_ESCAPE = 4;
+    /**
+     * In an escape with intermediate bytes (e.g. <code>ESC ( B</code>), up to
+     * its final byte
+     */
+    private static final int INTERMEDIATE = 5;
+
+    private final StringBuilder text = new StringBuilder();
+    /**
+     * (offset, length, style) triples
+     */
+    private int[] runs = new int[48];
+    private int runCount;
+
+    /**
+     * Styles kept with their exact colors. Past this, colors are rounded to
+     * the 16 standard ones, so the table stays bounded (by this plus 17 x 17
+     * colors x 8 attribute sets) however many colors a gradient uses
+     */
+    static final int EXACT_STYLES = 1024;
+
+    private final ArrayList<Style> styles = new ArrayList<>();
+    private final HashMap<Style, Integer> styleIds = new HashMap<>();
+
+    private int state = TEXT;
+    /**
+     * Parameters of the CSI sequence being read
+     */
+    private int[] params = new int[16];
+    /**
+     * Whether each parameter came after a ':', making it a sub-parameter of
+     * the one before (e.g. <code>38:2::10:20:30</code>)
+     */
+    private boolean[] subParams = new boolean[16];
+    private int paramCount;
+    private boolean csiPrivate;
+
+    /**
+     * Current SGR attributes
+     */
+    private Color foreground;
+    private Color background;
+    private boolean bold;
+    private boolean italic;
+    private boolean underline;
+    private int style;
+
+    public AnsiParser() {
+        style = intern(new Style(null, null, false, false, false));
+    }
+
+    /**
+     * @param chunk Next piece of output (may end in the middle of an escape
+     *              sequence)
+     */
+    public void append(CharSequence chunk) {
+        int runFrom = text.length();
+        for (int i = 0, n = chunk.length(); i < n; i++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+            case TEXT:
+                if (c == ESC) {
+                    state = ESCAPE;
+                } else {
+                    text.append(c);
+                }
+                break;
+
+            case ESCAPE:
+                if (c == '[') {
+                    state = CSI;
+                    paramCount = 0;
+                    csiPrivate = false;
+                    params[0] = -1;
+                    subParams[0] = false;
+                } else if (c == ']') {
+                    state = OSC;
+                } else if (c >= 0x20 && c <= 0x2F) {
+                    state = INTERMEDIATE;
+                } else {
+                    // Two-char sequence (or a stray ESC); drop it
+                    state = TEXT;
+                }
+                break;
+
+            case INTERMEDIATE:
+                if (c >= 0x30 && c <= 0x7E) {
+                    // Final byte
+                    state = TEXT;
+                } else if (c == ESC) {
+                    // Cut off by a new sequence
+                    state = ESCAPE;
+                } else if (c < 0x20 || c > 0x2F) {
+                    // Not a sequence after all; keep the char
+                    state = TEXT;
+                    text.append(c);
+                }
+                break;
+
+            case CSI:
+                if (c >= '0' && c <= '9') {
+                    if (params[paramCount] < 0) {
+                        params[paramCount] = 0;
+                    }
+                    params[paramCount] = Math.min(params[paramCount] * 10 + (c - '0'), 0xFFFFFF);
+                } else if (c == ';' || c == ':') {
+                    if (paramCount + 1 < params.length) {
+                        paramCount++;
+                    }
+                    params[paramCount] = -1;
+                    subParams[paramCount] = c == ':';
+                } else if (c >= '<' && c <= '?') {
+                    csiPrivate = true;
+                } else if (c >= '@' && c <= '~') {
+                    // Final byte
+                    state = TEXT;
+                    if (c == 'm' && !csiPrivate) {
+                        int before = text.length();
+                        addRun(runFrom, before);
+                        runFrom = before;
+                        sgr(paramCount + 1);
+                    }
+                }
+                break;
+
+            case OSC:
+                if (c == BEL) {
+                    state = TEXT;
+                } else if (c == ESC) {
+                    state = OSC_ESCAPE;
+                }
+                break;
+
+            case OSC_ESCAPE:
+                state = c == '\\' ? TEXT : OSC;
+                break;
+
+            default:
+                break;
+            }
+        }
+        addRun(runFrom, text.length());
+    }
+
+    /**
+     * Forget all text. The current style and any half read sequence are kept
+     */
+    public void clear() {
+        text.setLength(0);
+        runCount = 0;
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @return Text without escape sequences
+     */
+    public CharSequence text() {
+        return text;
+    }
+
+    /**
+     * @return Number of style runs
+     */
+    public int runCount() {
+        return runCount;
+    }
+
+    /**
+     * @param run Run index
+     * @return Offset in <code>text()</code> of the run
+     */
+    public int runOffset(int run) {
+        return runs[3 * run];
+    }
+
+    /**
+     * @param run Run index
+     * @return Number of chars in the run
+     */
+    public int runLength(int run) {
+        return runs[3 * run + 1];
+    }
+
+    /**
+     * @param run Run index
+     * @return Style id of the run (see <code>style(int)</code>)
+     */
+    public int runStyle(int run) {
+        return runs[3 * run + 2];
+    }
+
+    /**
+     * @param id Style id
+     * @return Style with that id
+     */
+    public Style style(int id) {
+        return styles.get(id);
+    }
+
+    /**
+     * @return Number of distinct styles seen (ids are 0 to this - 1; 0 is the
+     *         default style). Bounded: once there are many, colors are
+     *         rounded to the 16 standard ones
+     */
+    public int styleCount() {
+        return styles.size();
+    }
+
+    /**
+     * @param s Text
+     * @param i Index of an ESC in s
+     * @return Index just past the escape sequence starting at i (or the length
+     *         of s if it is cut off)
+     */
+    static int skipEscape(CharSequence s, int i) {
+        int n = s.length();
+        if (i + 1 >= n) {
+            return n;
+        }
+        char kind = s.charAt(i + 1);
+        if (kind == '[') {
+            for (int j = i + 2; j < n; j++) {
+                char c = s.charAt(j);
+                if (c >= '@' && c <= '~') {
+                    return j + 1;
+                }
+            }
+            return n;
+        }
+        if (kind == ']') {
+            for (int j = i + 2; j < n; j++) {
+                char c = s.charAt(j);
+                if (c == BEL) {
+                    return j + 1;
+                }
+                if (c == ESC && j + 1 < n && s.charAt(j + 1) == '\\') {
+                    return j + 2;
+                }
+            }
+            return n;
+        }
+        // Intermediate bytes, then one final byte
+        int j = i + 1;
+        while (j < n && s.charAt(j) >= 0x20 && s.charAt(j) <= 0x2F) {
+            j++;
+        }
+        if (j == i + 1 || (j < n && s.charAt(j) >= 0x30 && s.charAt(j) <= 0x7E)) {
+            return Math.min(j + 1, n);
+        }
+        return j;
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * Add text [from, to) as a run of the current style
+     */
+    private void addRun(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        if (runCount > 0 && runs[3 * runCount - 1] == style
+                && runs[3 * runCount - 3] + runs[3 * runCount - 2] == from) {
+            // Same style as the last run; extend it
+            runs[3 * runCount - 2] += to - from;
+            return;
+        }
+        if (3 * runCount + 3 > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runs[3 * runCount] = from;
+        runs[3 * runCount + 1] = to - from;
+        runs[3 * runCount + 2] = style;
+        runCount++;
+    }
+
+    /**
+     * Apply an SGR sequence
+     *
+     * @param count Number of parameters (an empty one means 0)
+     */
+    private void sgr(int count) {
+        for (int i = 0; i < count; i++) {
+            int p = Math.max(params[i], 0);
+            int groupEnd = i + 1;
+            while (groupEnd < count && subParams[groupEnd]) {
+                groupEnd++;
+            }
+            if (groupEnd > i + 1) {
+                subParamSgr(p, i + 1, groupEnd);
+                i = groupEnd - 1;
+                continue;
+            }
+
+            if (p == 0) {
+                foreground = null;
+                background = null;
+                bold = false;
+                italic = false;
+                underline = false;
+            } else if (p == 1) {
+                bold = true;
+            } else if (p == 3) {
+                italic = true;
+            } else if (p == 4) {
+                underline = true;
+            } else if (p == 22) {
+                bold = false;
+            } else if (p == 23) {
+                italic = false;
+            } else if (p == 24) {
+                underline = false;
+            } else if (p >= 30 && p <= 37) {
+                foreground = PALETTE[p - 30];
+            } else if (p >= 90 && p <= 97) {
+                foreground = PALETTE[p - 90 + 8];
+            } else if (p == 39) {
+                foreground = null;
+            } else if (p >= 40 && p <= 47) {
+                background = PALETTE[p - 40];
+            } else if (p >= 100 && p <= 107) {
+                background = PALETTE[p - 100 + 8];
+            } else if (p == 49) {
+                background = null;
+            } else if ((p == 38 || p == 48) && i + 1 < count) {
+                // Extended color: 5;n or 2;r;g;b
+                Color color = null;
+                if (params[i + 1] == 5 && i + 2 < count) {
+                    color = color256(Math.max(params[i + 2], 0));
+                    i += 2;
+                } else if (params[i + 1] == 2 && i + 4 < count) {
+                    color = new Color(clamp(params[i + 2]), clamp(params[i + 3]), clamp(params[i + 4]));
+                    i += 4;
+                } else {
+                    i++;
+                }
+                if (p == 38) {
+                    foreground = color;
+                } else {
+                    background = color;
+                }
+            }
+            // Anything else (blink, inverse, fonts ...) is ignored
+        }
+        style = intern(new Style(foreground, background, bold, italic, underline));
+    }
+
+    /**
+     * Apply an SGR parameter with colon sub-parameters
+     *
+     * @param p    Parameter
+     * @param from Index of its first sub-parameter
+     * @param to   Index just past its last sub-parameter
+     */
+    private void subParamSgr(int p, int from, int to) {
+        if (p == 38 || p == 48) {
+            // 5:n, or 2:colorspace:r:g:b where the color space id is usually
+            // empty (some programs leave it out: 2:r:g:b)
+            Color color = null;
+            int n = to - from;
+            if (params[from] == 5 && n >= 2) {
+                color = color256(Math.max(params[from + 1], 0));
+            } else if (params[from] == 2 && n >= 4) {
+                int rgb = n >= 5 ? from + 2 : from + 1;
+                color = new Color(clamp(params[rgb]), clamp(params[rgb + 1]), clamp(params[rgb + 2]));
+            }
+            if (p == 38) {
+                foreground = color;
+            } else {
+                background = color;
+            }
+        } else if (p == 4) {
+            // 4:0 is no underline; 4:1 to 4:5 are underline shapes
+            underline = Math.max(params[from], 0) != 0;
+        }
+        // Anything else (underline color ...) is ignored, sub-parameters and all
+    }
+
+    private int intern(Style s) {
+        Integer id = styleIds.get(s);
+        if (id == null && styles.size() >= EXACT_STYLES) {
+            s = new Style(nearest(s.foreground), nearest(s.background), s.bold, s.italic, s.underline);
+            id = styleIds.get(s);
+        }
+        if (id == null) {
+            id = styles.size();
+            styles.add(s);
+            styleIds.put(s, id);
+        }
+        return id;
+    }
+
+    /**
+     * @param n Color index 0-255
+     * @return xterm 256-color palette entry
+     */
+    private static Color color256(int n) {
+        if (n < 16) {
+            return PALETTE[n];
+        }
+        if (n < 232) {
+            // 6 x 6 x 6 cube
+            n -= 16;
+            int[] levels = { 0, 95, 135, 175, 215, 255 };
+            return new Color(levels[n / 36], levels[n / 6 % 6], levels[n % 6]);
+        }
+        int gray = 8 + 10 * (Math.min(n, 255) - 232);
+        return new Color(gray, gray, gray);
+    }
+
+    /**
+     * @param c Color, or <code>null</code>
+     * @return Closest of the 16 standard colors, or <code>null</code>
+     */
+    private static Color nearest(Color c) {
+        if (c == null) {
+            return null;
+        }
+        Color res = PALETTE[0];
+        int best = Integer.MAX_VALUE;
+        for (Color p : PALETTE) {
+            int r = p.getRed() - c.getRed();
+            int g = p.getGreen() - c.getGreen();
+            int b = p.getBlue() - c.getBlue();
+            int distance = r * r + g * g + b * b;
+            if (distance < best) {
+                best = distance;
+                res = p;
+            }
+        }
+        return res;
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(v, 255));
+    }
+
+    /**
+     * How a run is drawn. Colors are <code>null</code> for the default (the
+     * graphics' color, and no background)
+     */
+    public static final class Style {
+        public final Color foreground;
+        public final Color background;
+        public final boolean bold;
+        public final boolean italic;
+        public final boolean underline;
+
+        Style(Color foreground, Color background, boolean bold, boolean italic, boolean underline) {
+            this.foreground = foreground;
+            this.background = background;
+            this.bold = bold;
+            this.italic = italic;
+            this.underline = underline;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Style)) {
+                return false;
+            }
+            Style other = (Style) o;
+            return bold == other.bold && italic == other.italic && underline == other.underline
+                && Objects.equals(foreground, other.foreground) && Objects.equals(background, other.background);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(foreground, background, bold, italic, underline);
+        }
+    }
+}
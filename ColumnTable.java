@@ -0,0 +1,450 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import gui.util.Justify;
+
+/**
+ * Table of text with columns as wide as their widest cell, for data that used
+ * to be drawn as tab-separated lines (which misalign as soon as a cell is wider
+ * than a tab stop). For example
+ *
+ * <pre>
+ * ColumnTable table = new ColumnTable("Time", "Host", "Latency");
+ * table.setJustify(2, Justify.END);
+ * panel.add(new JScrollPane(table));
+ * ...
+ * // On the EDT
+ * table.append(rows);
+ * </pre>
+ *
+ * Cells are stored a column at a time. Appended rows are measured off the EDT,
+ * split into chunks on a fork/join pool, with the
+ * <code>TextMetricsCache</code> fast path (repeated values are looked up, but
+ * one-off cells don't fill the cache). Only the new rows are measured, and
+ * column widths grow when the results arrive; until then new rows are painted
+ * with the widths so far. Painting draws only the rows and columns in the clip.
+ * <p>
+ * Column and row geometry (<code>columnX</code>, <code>columnAt</code>,
+ * <code>rowAt</code>, <code>cellBounds</code>) is exposed for hit-testing. Like
+ * other Swing components, it must only be used on the EDT
+ */
+public class ColumnTable extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Rows measured per fork/join task
+     */
+    private static final int CHUNK = 4096;
+    /**
+     * Space on each side of a cell
+     */
+    public static final int PADDING = Positioner.SPACER;
+
+    private final ForkJoinPool pool;
+    private final String[] headers;
+    private final int columns;
+
+    /**
+     * Cells by column, then row
+     */
+    private String[][] cells;
+    private int rowCount;
+
+    private final Justify[] justify;
+    /**
+     * Widest cell (or header) per column measured so far
+     */
+    private final int[] widths;
+    /**
+     * Left edge of each column, and the right edge of the last one
+     */
+    private final int[] columnX;
+    /**
+     * Cache of the font's widths (replaced only by <code>setFont</code>), and a
+     * counter that changes whenever all rows are remeasured, so measurements
+     * in flight from before are dropped
+     */
+    private TextMetricsCache metrics;
+    private int generation;
+    /**
+     * Completes once the widths of the latest remeasure of all rows are applied
+     */
+    private CompletableFuture<Void> remeasured = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param headers Column titles
+     */
+    public ColumnTable(String... headers) {
+        this(ForkJoinPool.commonPool(), headers);
+    }
+
+    /**
+     * @param pool    Pool to measure rows on
+     * @param headers Column titles
+     */
+    public ColumnTable(ForkJoinPool pool, String... headers) {
+        if (headers.length == 0) {
+            throw new IllegalArgumentException("A table needs at least one column");
+        }
+        this.pool = pool;
+        this.headers = headers.clone();
+        columns = headers.length;
+        cells = new String[columns][64];
+        justify = new Justify[columns];
+        Arrays.fill(justify, Justify.START);
+        widths = new int[columns];
+        columnX = new int[columns + 1];
+
+        setOpaque(true);
+        setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        setBackground(Color.WHITE);
+        setForeground(Color.BLACK);
+    }
+
+    /**
+     * Rows
+     */
+
+    /**
+     * Add rows at the end. They are shown at once; their widths are measured in
+     * the background
+     *
+     * @param rows Rows to add, each with a cell per column (missing or
+     *             <code>null</code> cells are empty)
+     * @return Completes on the EDT once the new rows' widths are applied (by
+     *         this measurement, or by a remeasure of all rows that replaced it)
+     */
+    public CompletableFuture<Void> append(String[][] rows) {
+        int from = rowCount;
+        int to = from + rows.length;
+        if (to > cells[0].length) {
+            int capacity = Math.max(to, cells[0].length * 2);
+            for (int c = 0; c < columns; c++) {
+                cells[c] = Arrays.copyOf(cells[c], capacity);
+            }
+        }
+        for (int r = 0; r < rows.length; r++) {
+            String[] row = rows[r];
+            for (int c = 0; c < columns; c++) {
+                cells[c][from + r] = c < row.length && row[c] != null ? row[c] : "";
+            }
+        }
+        rowCount = to;
+        revalidate();
+        repaint();
+
+        return measure(from, to);
+    }
+
+    /**
+     * Remove every row
+     */
+    public void clear() {
+        cells = new String[columns][64];
+        rowCount = 0;
+        remeasure();
+    }
+
+    /**
+     * @param column Column index
+     * @param j      Where cells go in the column
+     */
+    public void setJustify(int column, Justify j) {
+        justify[column] = j;
+        repaint();
+    }
+
+    /**
+     * @return Number of rows
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param row    Row index
+     * @param column Column index
+     * @return Text of the cell
+     */
+    public String cell(int row, int column) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        return cells[column][row];
+    }
+
+    /**
+     * Geometry
+     */
+
+    /**
+     * @return Number of columns
+     */
+    public int columnCount() {
+        return columns;
+    }
+
+    /**
+     * @param column Column index, or the column count for the right edge of the
+     *               last column
+     * @return x of the left edge of the column
+     */
+    public int columnX(int column) {
+        return columnX[column];
+    }
+
+    /**
+     * @param column Column index
+     * @return Width of the column, padding included
+     */
+    public int columnWidth(int column) {
+        return columnX[column + 1] - columnX[column];
+    }
+
+    /**
+     * @param x x in this component
+     * @return Column at x, or -1 if past either end
+     */
+    public int columnAt(int x) {
+        if (x < 0 || x >= columnX[columns]) {
+            return -1;
+        }
+        int res = Arrays.binarySearch(columnX, 0, columns + 1, x);
+        // Exact hit on a left edge, or the column whose left edge is below x
+        return res >= 0 ? res : -res - 2;
+    }
+
+    /**
+     * @param y y in this component
+     * @return Row at y, -1 for the header, or -2 if past either end
+     */
+    public int rowAt(int y) {
+        if (y < 0) {
+            return -2;
+        }
+        int res = y / rowHeight() - 1;
+        return res < rowCount ? res : -2;
+    }
+
+    /**
+     * @param row    Row index, or -1 for the header
+     * @param column Column index
+     * @param dest   Rectangle to store the result in
+     * @return dest, set to the bounds of the cell
+     */
+    public Rectangle cellBounds(int row, int column, Rectangle dest) {
+        int height = rowHeight();
+        dest.setBounds(columnX[column], (row + 1) * height, columnWidth(column), height);
+        return dest;
+    }
+
+    /**
+     * @return Height of a row (the header is one row)
+     */
+    public int rowHeight() {
+        return getFontMetrics(getFont()).getHeight();
+    }
+
+    /**
+     * Appearance changes remeasure every cell
+     */
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        remeasure();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(columnX[columns], (rowCount + 1) * rowHeight());
+    }
+
+    /**
+     * Painting
+     */
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        // Widths are measured with the component's font metrics (like JTable),
+        // whatever hints g has: remeasuring here would relayout from paint
+        g.setFont(getFont());
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        FontMetrics fm = metrics.fontMetrics();
+        int height = fm.getHeight();
+        int ascent = fm.getAscent();
+        int firstColumn = Math.max(0, columnAt(clip.x));
+        int lastColumn = columnAt(clip.x + clip.width - 1);
+        if (lastColumn < 0) {
+            lastColumn = columns - 1;
+        }
+        // Rows are numbered from the header at -1
+        int firstRow = Math.max(-1, clip.y / height - 1);
+        int lastRow = Math.min(rowCount - 1, (clip.y + clip.height - 1) / height - 1);
+
+        g.setColor(getForeground());
+        for (int row = firstRow; row <= lastRow; row++) {
+            int baseline = (row + 1) * height + ascent;
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                String text = row < 0 ? headers[c] : cells[c][row];
+                int x = columnX[c] + PADDING;
+                if (justify[c] != Justify.START) {
+                    int space = widths[c] - metrics.measure(text);
+                    x += justify[c] == Justify.END ? space : space / 2;
+                }
+                g.drawString(text, x, baseline);
+            }
+        }
+
+        // Rule under the header
+        if (firstRow < 0) {
+            g.drawLine(clip.x, height - 1, clip.x + clip.width - 1, height - 1);
+        }
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * Start over with widths of the headers only, and measure every row again
+     */
+    private void remeasure() {
+        generation++;
+        if (metrics == null || !metrics.fontMetrics().getFont().equals(getFont())) {
+            metrics = new TextMetricsCache(getFontMetrics(getFont()));
+        }
+        for (int c = 0; c < columns; c++) {
+            widths[c] = metrics.width(headers[c]);
+        }
+        updateColumns();
+        revalidate();
+        repaint();
+        remeasured = rowCount > 0 ? measure(0, rowCount) : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Measure rows [from, to) in the background and widen columns to fit. If
+     * all rows are remeasured meanwhile, the result is dropped and the returned
+     * future completes with the remeasure instead
+     */
+    private CompletableFuture<Void> measure(int from, int to) {
+        // Column arrays are only ever replaced by bigger copies, so these keep
+        // the rows even if more are appended meanwhile
+        String[][] snapshot = cells.clone();
+        TextMetricsCache cache = metrics;
+        int gen = generation;
+
+        CompletableFuture<Void> res = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> new Widths(snapshot, cache, from, to).invoke(), pool)
+            .whenComplete((measured, e) -> SwingUtilities.invokeLater(() -> {
+                if (gen != generation) {
+                    // Superseded by a remeasure of all rows: finish with it
+                    remeasured.whenComplete((v, e2) -> {
+                        if (e2 != null) {
+                            res.completeExceptionally(e2);
+                        } else {
+                            res.complete(null);
+                        }
+                    });
+                    return;
+                }
+                if (e != null) {
+                    res.completeExceptionally(e);
+                    return;
+                }
+                widen(measured);
+                res.complete(null);
+            }));
+        return res;
+    }
+
+    private void widen(int[] measured) {
+        boolean changed = false;
+        for (int c = 0; c < columns; c++) {
+            if (measured[c] > widths[c]) {
+                widths[c] = measured[c];
+                changed = true;
+            }
+        }
+        if (changed) {
+            updateColumns();
+            revalidate();
+            repaint();
+        }
+    }
+
+    private void updateColumns() {
+        for (int c = 0; c < columns; c++) {
+            columnX[c + 1] = columnX[c] + widths[c] + 2 * PADDING;
+        }
+    }
+
+    /**
+     * Widest cell per column over a range of rows, split in half down to
+     * <code>CHUNK</code> rows
+     */
+    private static final class Widths extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final String[][] cells;
+        private final TextMetricsCache metrics;
+        private final int from;
+        private final int to;
+
+        Widths(String[][] cells, TextMetricsCache metrics, int from, int to) {
+            this.cells = cells;
+            this.metrics = metrics;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                Widths left = new Widths(cells, metrics, from, mid);
+                left.fork();
+                int[] res = new Widths(cells, metrics, mid, to).compute();
+                int[] other = left.join();
+                for (int c = 0; c < res.length; c++) {
+                    res[c] = Math.max(res[c], other[c]);
+                }
+                return res;
+            }
+
+            int[] res = new int[cells.length];
+            for (int c = 0; c < cells.length; c++) {
+                String[] column = cells[c];
+                int max = 0;
+                for (int r = from; r < to; r++) {
+                    max = Math.max(max, metrics.measure(column[r]));
+                }
+                res[c] = max;
+            }
+            return res;
+        }
+    }
+}
@@ -25,6 +25,20 @@ public class Components {
         return res;
     }
 
+    /**
+     * Sets up a new JTextField in a container using <code>PositionLayout</code>
+     * 
+     * @param where  Where to put the field (e.g.
+     *               <code>PositionLayout.beside(label, Direction.RIGHT)</code>)
+     * @param parent The parent container
+     * @return The initialized and set up field
+     */
+    public static JTextField textField(PositionLayout.Constraint where, Container parent) {
+        JTextField res = new JTextField();
+        parent.add(res, where);
+        return res;
+    }
+
     /**
      * Sets up a new JButton. For simplicity, when calling from <code>class MyClass
      * extends JPanel implements ActionListener</code>, you can use
@@ -47,6 +61,22 @@ public class Components {
         return res;
     }
 
+    /**
+     * Sets up a new JButton in a container using <code>PositionLayout</code>
+     * 
+     * @param name     What to label the button
+     * @param where    Where to put the button
+     * @param parent   The parent container
+     * @param listener What listens to the buttons actions
+     * @return Initialized and set up button.
+     */
+    public static JButton button(String name, PositionLayout.Constraint where, Container parent, ActionListener listener) {
+        JButton res = new JButton(name);
+        res.addActionListener(listener);
+        parent.add(res, where);
+        return res;
+    }
+
     /**
      * Sets up a scrollable JTextArea. To get the text area use the following (or
      * similar);
@@ -67,7 +97,26 @@ public class Components {
      * @see paneComponent needs explicit cast <code>(JTextArea)</code>
      */
     public static JScrollPane scrollPane(String initialText, Rectangle paneBounds, Container parent) {
-        JTextArea textArea = new JTextArea(initialText);
+        return scrollPane(initialText, paneBounds, parent, false);
+    }
+
+    /**
+     * Sets up a scrollable JTextArea, optionally backed by a
+     * <code>PieceTableDocument</code> so that huge texts stay quick to edit and
+     * <code>setText</code> does not copy the whole buffer
+     * 
+     * @param initialText Initial text for the text area
+     * @param paneBounds  The bounds
+     * @param parent      The parent container (e.g. the JPanel)
+     * @param pieceTable  Whether to use a piece table instead of the default
+     *                    document
+     * @return Initialized and set up scrollPane
+     * @see paneComponent needs explicit cast <code>(JTextArea)</code>
+     */
+    public static JScrollPane scrollPane(String initialText, Rectangle paneBounds, Container parent, boolean pieceTable) {
+        JTextArea textArea = pieceTable
+            ? new JTextArea(new PieceTableDocument(initialText == null ? "" : initialText))
+            : new JTextArea(initialText);
 
         JScrollPane scrollPane = new JScrollPane(textArea);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
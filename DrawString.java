@@ -1,17 +1,24 @@
 package gui;
 
+import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import javax.swing.JComponent;
 
 import gui.util.Direction;
+import gui.util.IntPair;
 import gui.util.Justify;
-import gui.util.Pair;
+import gui.util.LongPacked;
 import gui.util.Positional;
 
 public class DrawString {
@@ -20,10 +27,60 @@ public class DrawString {
     private Graphics g;
     private int tabLength;
     private int height;
+    /**
+     * How far glyphs can reach above and below the baseline
+     */
+    private int maxAscent;
+    private int maxDescent;
     private Rectangle last;
+    private TextMetricsCache metrics;
+    /**
+     * Latin-1 advances for the last font measured with (see
+     * <code>Latin1Widths</code>)
+     */
+    private FontMetrics latin1Metrics;
+    private int[] latin1;
+    /**
+     * Font, metrics and Latin-1 advances per style of <code>styledParser</code>
+     * (see <code>styleFonts</code>), and scratch space for
+     * <code>drawAnsi</code>
+     */
+    private AnsiParser styledParser;
+    private Font styledBase;
+    private FontRenderContext styledFrc;
+    private int styled;
+    private Font[] styleFonts = new Font[0];
+    private FontMetrics[] styleMetrics = new FontMetrics[0];
+    private int[][] styleTables = new int[0][];
+    private int[] ansiPerStyle = new int[0];
+    private int[] ansiNext = new int[0];
+    private int[] ansiLayout = new int[64];
+    private char[] ansiCells = new char[128];
+    private int[] ansiCellStyles = new int[128];
+    private int ansiCellCount;
+    private int[] ansiOrder = new int[16];
+    private final ArrayList<String> ansiPieces = new ArrayList<>();
+    /**
+     * Parts of the text from <code>parsedLines</code> and their (x, y)
+     * positions packed with <code>LongPacked</code>, reused between calls
+     */
+    private String[] parts = new String[16];
+    private long[] partPositions = new long[16];
+    private int partCount;
+    private final StringBuilder word = new StringBuilder();
 
     public DrawString(Graphics g) {
+        this(g, null);
+    }
+
+    /**
+     * @param g       Graphics to draw on
+     * @param metrics Widths to reuse when they match the font of g (e.g. loaded
+     *                from a <code>LayoutSnapshot</code>), or <code>null</code>
+     */
+    public DrawString(Graphics g, TextMetricsCache metrics) {
         this.g = g;
+        this.metrics = metrics;
         String tab = "";
         for (int i = 0; i < TAB_SIZE; i++) {
             tab += "W|";
@@ -31,6 +88,8 @@ public class DrawString {
         
         tabLength = width(tab)/2;
         height = g.getFontMetrics().getHeight();
+        maxAscent = g.getFontMetrics().getMaxAscent();
+        maxDescent = g.getFontMetrics().getMaxDescent();
         last = new Rectangle();
     }
 
@@ -57,7 +116,20 @@ public class DrawString {
      * @return Width of <code>text</text>
      */
     public int width(String text) {
-        return g.getFontMetrics().stringWidth(text);
+        long start = Metrics.start();
+        int res;
+        if (metrics != null && metrics.matches(g)) {
+            res = metrics.width(text);
+        } else {
+            FontMetrics fm = g.getFontMetrics();
+            if (fm != latin1Metrics) {
+                latin1Metrics = fm;
+                latin1 = Latin1Widths.table(fm);
+            }
+            res = Latin1Widths.width(fm, latin1, text);
+        }
+        Metrics.stop(Metrics.WIDTH, start);
+        return res;
     }
 
     /**
@@ -101,34 +173,41 @@ public class DrawString {
      * @return The rectangle containing this (also saved in <code>last</code>)
      */
     public Rectangle drawPositionedText(Direction dir, Justify j, String text, Rectangle ref, boolean parse) {
-        // (Possibly parse lines)
-        ArrayList<Pair<String, Point>> lines;
-        if (parse) {
-            lines = parsedLines(text, new Point(0, 0));
-
-        } else {
-            lines = new ArrayList<>();
-            lines.add(new Pair<>(text, new Point(0, 0)));
+        if (EdtWatchdog.watching()) {
+            EdtWatchdog.enter("drawPositionedText", g, text.length(), lineCount(text));
         }
 
-        // get max line width
-        int maxWidth = -1;
-        for (Pair<String, Point> line : lines) {
-            int width = width(line.getKey());
-            if (width > maxWidth) {
-                maxWidth = width;
+        try {
+            // (Possibly parse lines)
+            if (parse) {
+                parsedLines(text, 0, 0);
+
+            } else {
+                partCount = 0;
+                addPart(text, 0, 0);
             }
-        }
 
-        // height =      final line y                              - first line y               + line height
-        int height_net = lines.get(lines.size() - 1).getValue().y - lines.get(0).getValue().y + height;
+            // get max line width
+            int maxWidth = -1;
+            for (int i = 0; i < partCount; i++) {
+                int width = width(parts[i]);
+                if (width > maxWidth) {
+                    maxWidth = width;
+                }
+            }
 
-        // Finally position the text relative to ref
-        last = Positioner.positioned(new Positional(dir, j), ref, new Dimension(maxWidth, height_net), 0);
+            // height =      final line y                                 - first line y                       + line height
+            int height_net = LongPacked.get1(partPositions[partCount - 1]) - LongPacked.get1(partPositions[0]) + height;
 
-        controlledDraw(lines, last.x, last.y);
+            // Finally position the text relative to ref
+            last = Positioner.positioned(new Positional(dir, j), ref, new Dimension(maxWidth, height_net), 0);
 
-        return last;
+            controlledDraw(last.x, last.y);
+
+            return last;
+        } finally {
+            EdtWatchdog.exit();
+        }
     }
 
     /**
@@ -253,13 +332,35 @@ public class DrawString {
      * @return Position for a line just under these
      */
     public Point drawLines(String[] lines, Point start) {
-        // Could use controlledDraw, but this is more efficient
-        for (String line : lines) {
-            g.drawString(line, start.x, start.y);
-            start.y += height();
+        if (EdtWatchdog.watching()) {
+            int length = 0;
+            for (String line : lines) {
+                length += line.length();
+            }
+            EdtWatchdog.enter("drawLines", g, length, lines.length);
         }
 
-        return start;
+        try {
+            // Could use controlledDraw, but this is more efficient
+            int from = 0;
+            int to = lines.length;
+            Rectangle clip = g.getClipBounds();
+            if (clip != null && height > 0) {
+                // Only lines inside the clip (e.g. not scrolled away or in another
+                // tile): first whose bottom reaches the clip, up to the first whose
+                // top is past it
+                from = (int) Math.max(0, ceilDiv((long) clip.y - maxDescent - start.y, height));
+                to = (int) Math.min(lines.length, ceilDiv((long) clip.y + clip.height + maxAscent - start.y, height));
+            }
+            for (int i = from; i < to; i++) {
+                g.drawString(lines[i], start.x, start.y + i * height);
+            }
+            start.y += lines.length * height;
+
+            return start;
+        } finally {
+            EdtWatchdog.exit();
+        }
     }
 
     /**
@@ -274,6 +375,209 @@ public class DrawString {
         return drawLines(lines, new Point(x, y));
     }
 
+    /**
+     * Bounds of text ranges (e.g. search hits from <code>TextSearchIndex</code>)
+     * in lines drawn with <code>drawLines(lines, x, y)</code>, to highlight them.
+     * Only lines inside the clip are measured; a range over several lines gives
+     * one rectangle per line
+     * 
+     * @param lines  Lines as drawn
+     * @param x      x passed to <code>drawLines</code>
+     * @param y      y passed to <code>drawLines</code>
+     * @param ranges Sorted (start, end) offsets into the lines joined with
+     *               <code>'\n'</code>
+     * @return Bounds of the visible parts of the ranges
+     */
+    public ArrayList<Rectangle> rangeBounds(String[] lines, int x, int y, List<IntPair> ranges) {
+        ArrayList<Rectangle> res = new ArrayList<>();
+        Rectangle clip = g.getClipBounds();
+        int ascent = g.getFontMetrics().getAscent();
+        int next = 0; // First range not over yet
+        int lineStart = 0;
+
+        for (int i = 0; i < lines.length && next < ranges.size(); i++) {
+            String line = lines[i];
+            int lineEnd = lineStart + line.length();
+            int baseline = y + i * height;
+
+            if (clip == null || visible(clip, baseline)) {
+                for (int r = next; r < ranges.size() && ranges.get(r).get0() <= lineEnd; r++) {
+                    int from = Math.max(ranges.get(r).get0(), lineStart) - lineStart;
+                    int to = Math.min(ranges.get(r).get1(), lineEnd) - lineStart;
+                    if (to > from) {
+                        res.add(new Rectangle(x + width(line.substring(0, from)), baseline - ascent,
+                                width(line.substring(from, to)), height));
+                    }
+                }
+            }
+
+            // Skip ranges that end on this line (or at its newline)
+            lineStart = lineEnd + 1;
+            while (next < ranges.size() && ranges.get(next).get1() <= lineStart) {
+                next++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Draw text parsed from ANSI output with its colors and styles. Lines are
+     * laid out first, then drawn a style at a time, so fonts and colors are
+     * switched once per style rather than once per run. Cursor controls work as
+     * in <code>drawString</code>: <code>\r</code> and <code>\b</code> move back
+     * so later text overwrites, and <code>\f</code> goes on a line down after
+     * the text so far. Tabs go to the next tab stop. Lines outside the clip
+     * are skipped without being measured. Fonts and widths per style are kept
+     * for later calls with the same parser and font
+     * 
+     * @param parsed Text and style runs
+     * @param x      x of the start of each line
+     * @param y      Baseline of the first line
+     * @return Position for a line just under these
+     */
+    public Point drawAnsi(AnsiParser parsed, int x, int y) {
+        CharSequence text = parsed.text();
+        if (EdtWatchdog.watching()) {
+            EdtWatchdog.enter("drawAnsi", g, text.length(), lineCount(text.toString()));
+        }
+
+        try {
+            Font base = g.getFont();
+            Color color = g.getColor();
+            int styleCount = parsed.styleCount();
+            styleFonts(parsed, base);
+            Rectangle clip = g.getClipBounds();
+            int ascent = g.getFontMetrics().getAscent();
+
+            // Lay out pieces (text between tabs within a run of cells)
+            ArrayList<String> pieces = ansiPieces;
+            pieces.clear();
+            int[] perStyle = ansiPerStyle;
+            Arrays.fill(perStyle, 0, styleCount, 0);
+            int length = text.length();
+            int run = 0;
+            int runEnd = 0;
+            int style = 0;
+            int baseline = y;
+            for (int i = 0; i < length;) {
+                int lineEnd = i;
+                int feeds = 0;
+                while (lineEnd < length && text.charAt(lineEnd) != '\n') {
+                    if (text.charAt(lineEnd) == '\f') {
+                        feeds++;
+                    }
+                    lineEnd++;
+                }
+
+                if (clip != null && baseline - maxAscent >= clip.y + clip.height) {
+                    // This line and all after it are below the clip
+                    baseline += height * lineBreaks(text, i);
+                    break;
+                }
+                if (clip != null && baseline + feeds * height + maxDescent < clip.y) {
+                    // Above the clip, even after its form feeds
+                    baseline += feeds * height;
+                } else {
+                    // Put the line together a cell at a time, with the cursor rules
+                    // of parseLine: \r and \b move back so what follows
+                    // overwrites, \f draws what there is and goes on a line down
+                    int segmentX = x;
+                    ansiCellCount = 0;
+                    int cursor = 0;
+                    for (int k = i; k < lineEnd; k++) {
+                        char c = text.charAt(k);
+                        if (c == '\r') {
+                            cursor = 0;
+                        } else if (c == '\b') {
+                            cursor = Math.max(0, cursor - 1);
+                        } else if (c == '\f') {
+                            segmentX = layoutCells(segmentX, baseline);
+                            baseline += height;
+                            ansiCellCount = 0;
+                            cursor = 0;
+                        } else {
+                            while (k >= runEnd && run < parsed.runCount()) {
+                                style = parsed.runStyle(run);
+                                runEnd = parsed.runOffset(run) + parsed.runLength(run);
+                                run++;
+                            }
+                            if (cursor == ansiCells.length) {
+                                ansiCells = Arrays.copyOf(ansiCells, 2 * cursor);
+                                ansiCellStyles = Arrays.copyOf(ansiCellStyles, 2 * cursor);
+                            }
+                            ansiCells[cursor] = c;
+                            ansiCellStyles[cursor] = style;
+                            cursor++;
+                            ansiCellCount = Math.max(ansiCellCount, cursor);
+                        }
+                    }
+                    layoutCells(segmentX, baseline);
+                }
+
+                if (lineEnd < length) {
+                    baseline += height;
+                }
+                i = lineEnd + 1;
+            }
+            int[] layout = ansiLayout; // (x, baseline, width, style) per piece
+
+            // Group pieces by style (counting sort)
+            int[] next = ansiNext;
+            next[0] = 0;
+            for (int s = 1; s < styleCount; s++) {
+                next[s] = next[s - 1] + perStyle[s - 1];
+            }
+            if (ansiOrder.length < pieces.size()) {
+                ansiOrder = new int[Math.max(pieces.size(), 2 * ansiOrder.length)];
+            }
+            int[] order = ansiOrder;
+            for (int n = 0; n < pieces.size(); n++) {
+                order[next[layout[4 * n + 3]]++] = n;
+            }
+
+            // Backgrounds under all text, then text a style at a time
+            for (int pass = 0; pass < 2; pass++) {
+                int k = 0;
+                for (int s = 0; s < styleCount; s++) {
+                    int from = k;
+                    k += perStyle[s];
+                    AnsiParser.Style st = parsed.style(s);
+                    if (from == k || (pass == 0 && st.background == null)) {
+                        continue;
+                    }
+
+                    if (pass == 0) {
+                        g.setColor(st.background);
+                    } else {
+                        g.setFont(styleFonts[s]);
+                        g.setColor(st.foreground != null ? st.foreground : color);
+                    }
+                    for (int o = from; o < k; o++) {
+                        int n = order[o];
+                        int px = layout[4 * n];
+                        int py = layout[4 * n + 1];
+                        int width = layout[4 * n + 2];
+                        if (pass == 0) {
+                            g.fillRect(px, py - ascent, width, height);
+                            continue;
+                        }
+                        g.drawString(pieces.get(n), px, py);
+                        if (st.underline) {
+                            g.drawLine(px, py + 1, px + width - 1, py + 1);
+                        }
+                    }
+                }
+            }
+            pieces.clear();
+            g.setFont(base);
+            g.setColor(color);
+
+            return new Point(x, baseline + height);
+        } finally {
+            EdtWatchdog.exit();
+        }
+    }
+
     /**
      * Draw text in a parsed way. Note that this is positioned in accordance to
      * normal <code>Graphics</code> draw methods like
@@ -286,7 +590,16 @@ public class DrawString {
      * @return Rectangle bounding the drawn text
      */
     public Rectangle drawString(String text, int x, int y) {
-        return controlledDraw(parsedLines(text, new Point(x, y + height)), 0, height);
+        if (EdtWatchdog.watching()) {
+            EdtWatchdog.enter("drawString", g, text.length(), lineCount(text));
+        }
+
+        try {
+            parsedLines(text, x, y + height);
+            return controlledDraw(0, height);
+        } finally {
+            EdtWatchdog.exit();
+        }
     }
 
     /**
@@ -294,43 +607,185 @@ public class DrawString {
      */
 
     /**
-     * @param text  Text to parse
-     * @param start Starting (x, y)
-     * @return List of strings and points representing the text broken up according
-     *         to the escaped characters
+     * @param clip     Clip bounds
+     * @param baseline Baseline y of a line of text
+     * @return Whether any of the line could be inside the clip vertically
      */
-    private ArrayList<Pair<String, Point>> parsedLines(String text, Point start) {
-        Point originalPoint = (Point)start.clone();
-        ArrayList<Pair<String, Point>> lines = new ArrayList<>();
-        
-        for (String line : text.split("\n")) {
-            ArrayList<Pair<String, Point>> parsedLines = parseLine(line, start);
-            start.move(originalPoint.x, start.y + height);
-            
-            lines.addAll(parsedLines);
+    private boolean visible(Rectangle clip, int baseline) {
+        return baseline + maxDescent >= clip.y && baseline - maxAscent < clip.y + clip.height;
+    }
+
+    /**
+     * Lay out the cells of a line (or of the part of it before a form feed) as
+     * pieces for <code>drawAnsi</code>, split at tabs and style changes
+     * 
+     * @param x        x of the start of the cells
+     * @param baseline Baseline of the cells
+     * @return x just past the last cell
+     */
+    private int layoutCells(int x, int baseline) {
+        int px = x;
+        for (int from = 0; from < ansiCellCount;) {
+            if (ansiCells[from] == '\t') {
+                px = x + tabLength * (1 + (px - x) / tabLength);
+                from++;
+                continue;
+            }
+
+            int style = ansiCellStyles[from];
+            int to = from + 1;
+            while (to < ansiCellCount && ansiCells[to] != '\t' && ansiCellStyles[to] == style) {
+                to++;
+            }
+            String piece = new String(ansiCells, from, to - from);
+            int width = Latin1Widths.width(styleMetrics[style], styleTables[style], piece);
+
+            int n = ansiPieces.size();
+            if (4 * n + 4 > ansiLayout.length) {
+                ansiLayout = Arrays.copyOf(ansiLayout, ansiLayout.length * 2);
+            }
+            ansiLayout[4 * n] = px;
+            ansiLayout[4 * n + 1] = baseline;
+            ansiLayout[4 * n + 2] = width;
+            ansiLayout[4 * n + 3] = style;
+            ansiPieces.add(piece);
+            ansiPerStyle[style]++;
+
+            px += width;
+            from = to;
         }
-        
-        return lines;
+        return px;
+    }
+
+    /**
+     * Make sure <code>styleFonts</code>, <code>styleMetrics</code> and
+     * <code>styleTables</code> hold every style of parsed. Styles already set
+     * up are kept as long as the parser, base font and rendering context stay
+     * the same (style ids only ever get added)
+     * 
+     * @param parsed Parser about to be drawn
+     * @param base   Font of unstyled text
+     */
+    private void styleFonts(AnsiParser parsed, Font base) {
+        FontRenderContext frc = g.getFontMetrics().getFontRenderContext();
+        if (parsed != styledParser || !base.equals(styledBase) || !frc.equals(styledFrc)) {
+            styledParser = parsed;
+            styledBase = base;
+            styledFrc = frc;
+            styled = 0;
+        }
+
+        int styleCount = parsed.styleCount();
+        if (styleCount > styleFonts.length) {
+            int capacity = Math.max(styleCount, 2 * styleFonts.length);
+            styleFonts = Arrays.copyOf(styleFonts, capacity);
+            styleMetrics = Arrays.copyOf(styleMetrics, capacity);
+            styleTables = Arrays.copyOf(styleTables, capacity);
+            ansiPerStyle = new int[capacity];
+            ansiNext = new int[capacity];
+        }
+        for (; styled < styleCount; styled++) {
+            AnsiParser.Style s = parsed.style(styled);
+            int fontStyle = base.getStyle() | (s.bold ? Font.BOLD : 0) | (s.italic ? Font.ITALIC : 0);
+            // Styles differing only in color share the font and its advances
+            int same = 0;
+            while (same < styled && styleFonts[same].getStyle() != fontStyle) {
+                same++;
+            }
+            if (same < styled) {
+                styleFonts[styled] = styleFonts[same];
+                styleMetrics[styled] = styleMetrics[same];
+                styleTables[styled] = styleTables[same];
+            } else {
+                styleFonts[styled] = fontStyle == base.getStyle() ? base : base.deriveFont(fontStyle);
+                styleMetrics[styled] = g.getFontMetrics(styleFonts[styled]);
+                styleTables[styled] = Latin1Widths.table(styleMetrics[styled]);
+            }
+        }
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+
+    /**
+     * @param text Text to count lines of
+     * @return Number of lines in text
+     */
+    private static int lineCount(String text) {
+        int res = 1;
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+            res++;
+        }
+        return res;
+    }
+
+    /**
+     * @param text Text to count in
+     * @param from Index to count from
+     * @return Number of newlines and form feeds in text from <code>from</code>
+     *         on
+     */
+    private static int lineBreaks(CharSequence text, int from) {
+        int res = 0;
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == '\n' || text.charAt(i) == '\f') {
+                res++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Break the text up according to the escaped characters into
+     * <code>parts</code> and their (x, y) <code>partPositions</code>
+     *
+     * @param text Text to parse
+     * @param x    Starting x position
+     * @param y    Starting y position
+     */
+    private void parsedLines(String text, int x, int y) {
+        long start = Metrics.start();
+        partCount = 0;
+
+        // Like split("\n"): trailing empty lines are dropped (but there is
+        // always one line)
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == '\n') {
+            end--;
+        }
+        for (int from = 0;; from++) {
+            int to = text.indexOf('\n', from);
+            if (to < 0 || to > end) {
+                to = end;
+            }
+            y = parseLine(text, from, to, x, y) + height;
+            if (to == end) {
+                break;
+            }
+            from = to;
+        }
+
+        Metrics.stop(Metrics.PARSED_LINES, start);
     }
 
     /**
      * Parses the escaped characters of a single line. Presuposes newlines have been
      * removed.
      * 
-     * @param line  Line to parse
-     * @param start Starting (x, y)
-     * @return List of strings and points representing the text broken up according
-     *         to the escaped characters
-     */
-    private ArrayList<Pair<String, Point>> parseLine(String line, Point start) {
-        /**
-         * Break up most escape sequences (except tab)
-         */
-        ArrayList<Pair<String, Point>> strings = new ArrayList<Pair<String, Point>>();
-        StringBuilder currentWord = new StringBuilder();
+     * @param line Text holding the line
+     * @param from Start of the line in it
+     * @param to   End of the line in it
+     * @param x    Starting x position
+     * @param y    Starting y position
+     * @return y position of the last part of the line (moved by <code>\f</code>)
+     */
+    private int parseLine(String line, int from, int to, int x, int y) {
+        StringBuilder currentWord = word;
+        currentWord.setLength(0);
         int carrot = 0; // We have to keep track of where things are being added for \b and \r
 
-        for (int i = 0; i < line.length(); i++) {
+        for (int i = from; i < to; i++) {
             char c = line.charAt(i);
 
             switch (c) {
@@ -348,121 +803,106 @@ public class DrawString {
             case '\f':
                 // Add line
                 String text = currentWord.toString();
-                strings.add(new Pair<String,Point>(
-                        text, 
-                        (Point) start.clone())
-                    );
+                addTabbed(text, x, y);
 
                 // Update
-                start.translate(width(text), height);   // Move start
-                currentWord = new StringBuilder();      // Clear word
+                x += width(text);                       // Move start
+                y += height;
+                currentWord.setLength(0);               // Clear word
                 carrot = 0;                             // Note: carrot is always relative to the currentWord
                 break;
 
+            // ANSI escape sequence (colors etc.): not shown here; see drawAnsi
+            case '\u001B':
+                i = Math.min(to, AnsiParser.skipEscape(line, i)) - 1;
+                break;
+
             // Just insert all other characters at the cursor
             default:
                 // Avoid indexOutofBounds errors
                 if (currentWord.length() > carrot) {
                     // Overwrite anything currently at cursor
-                    currentWord.deleteCharAt(carrot);
+                    currentWord.setCharAt(carrot, c);
+                } else {
+                    currentWord.append(c);
                 }
-                
-                currentWord.insert(carrot, c);
                 carrot++;
                 break;
             }
         }
 
         // Add remaining text
-        strings.add(new Pair<String, Point>(
-                currentWord.toString(),
-                (Point) start.clone())
-            );
-
-        /**
-         * Dealing with Tabs
-         */
-        ArrayList<Pair<String, Point>> res = new ArrayList<Pair<String, Point>>();
-
-        for (Pair<String, Point> pair : strings) {
-            start = pair.getValue();
-            // TODO: can this be rewritten with `String.split("\t")`
-
-            for (int i = 0; i < pair.getKey().length(); i++) {
-                switch (pair.getKey().charAt(i)) {
-                case '\t':
-                    // Slice out text up to tab
-                    String text = pair.getKey().substring(0, i);
-                    pair.setKey(pair.getKey().substring(i+1));
-                    i = 0;
-
-                    // Add text
-                    res.add(new Pair<String,Point>(
-                        text, (Point)start.clone()));
-                    
-                    // adjust start position
-                    start.translate(tabLength * (1 + width(text) / tabLength), 0);
-
-                    break;
+        addTabbed(currentWord.toString(), x, y);
 
-                default:
-                    // only interested in tabs
-                    break;
-                }
-            }
+        return y;
+    }
 
-            // Add remaining text
-            res.add(new Pair<String,Point>(
-                pair.getKey().substring(0, pair.getKey().length()),
-                (Point)start.clone()));
+    /**
+     * Breaks text up on tabs, moving each part to the next tab stop
+     * 
+     * @param text Text (without newlines) to break up
+     * @param x    Starting x position
+     * @param y    y position
+     */
+    private void addTabbed(String text, int x, int y) {
+        int from = 0;
+        for (int tab = text.indexOf('\t'); tab >= 0; tab = text.indexOf('\t', from)) {
+            // Slice out text up to tab
+            String part = text.substring(from, tab);
+            addPart(part, x, y);
+
+            // adjust start position
+            x += tabLength * (1 + width(part) / tabLength);
+            from = tab + 1;
         }
 
-        return res;
+        // Add remaining text
+        addPart(from == 0 ? text : text.substring(from), x, y);
+    }
+
+    private void addPart(String part, int x, int y) {
+        if (partCount == parts.length) {
+            parts = Arrays.copyOf(parts, 2 * partCount);
+            partPositions = Arrays.copyOf(partPositions, 2 * partCount);
+        }
+        parts[partCount] = part;
+        partPositions[partCount] = LongPacked.pack(x, y);
+        partCount++;
     }
     
     /**
-     * Draw a bunch of lines
+     * Draw the parsed parts
      * 
-     * @param strings Lines to draw
      * @param offsetX How much to offset the lines in the x direction
      * @param offsetY How much to offset the lines in the y direction
      * @return Rectangle bounding the drawn lines
      */
-    private Rectangle controlledDraw(ArrayList<Pair<String, Point>> strings, int offsetX, int offsetY) {
-        Pair<String, Point> first = strings.get(0);
-        Rectangle container = new Rectangle(
-                first.getValue().x, 
-                first.getValue().y, 
-                width(first.getKey()), 
-                height
-            );
-
-        for (Pair<String, Point> pair : strings) {
-            Point pos = pair.getValue();
-            // Update size as needed
-            if (pos.y + height > container.y + container.height) {
-                container.setSize(container.width, pos.y + height - container.y);
+    private Rectangle controlledDraw(int offsetX, int offsetY) {
+        long start = Metrics.start();
+        Rectangle clip = g.getClipBounds();
+        int minX = LongPacked.get0(partPositions[0]);
+        int minY = LongPacked.get1(partPositions[0]);
+        int maxX = minX + width(parts[0]);
+        int maxY = minY + height;
+
+        for (int i = 0; i < partCount; i++) {
+            String part = parts[i];
+            int x = LongPacked.get0(partPositions[i]);
+            int y = LongPacked.get1(partPositions[i]);
+            // Update bounds as needed
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x + width(part));
+            maxY = Math.max(maxY, y + height);
+
+            if (clip == null || visible(clip, y + offsetY)) {
+                g.drawString(part, x + offsetX, y + offsetY);
             }
-            int testWidth = pos.x + width(pair.getKey());
-            if (testWidth > container.x + container.width) {
-                container.setSize(testWidth, container.height);
-            }
-
-            // Update position as needed
-            if (pos.y < container.y) {
-                container.setLocation(container.x, pos.y);
-            }
-            if (pos.x < container.x) {
-                container.setLocation(pos.x, container.y);
-            }
-
-            g.drawString(
-                pair.getKey(), 
-                pair.getValue().x + offsetX, 
-                pair.getValue().y + offsetY
-            );
+            parts[i] = null;
         }
 
-        return last = container;
+        last = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+        Metrics.stop(Metrics.CONTROLLED_DRAW, start);
+        return last;
     }
 }
@@ -0,0 +1,362 @@
+package gui;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports events (including paints) that block the EDT for too long.
+ * <p>
+ * Installing pushes an <code>EventQueue</code> that timestamps every dispatch,
+ * and starts a daemon thread that checks on it. When one dispatch runs past the
+ * threshold, the EDT's stack and the <code>DrawString</code> call in progress
+ * (text length, line count, clip) are saved in a bounded ring buffer that can be
+ * dumped to a file. For example
+ *
+ * <pre>
+ * EdtWatchdog watchdog = EdtWatchdog.install(100, 64);
+ * ...
+ * watchdog.dump(Paths.get("stalls.txt"));
+ * </pre>
+ */
+public class EdtWatchdog {
+    /**
+     * The installed watchdog, if any
+     */
+    private static volatile EdtWatchdog active;
+
+    private final long thresholdNanos;
+    private final Stall[] ring;
+    private int next;
+    private long total;
+
+    private final WatchedQueue queue = new WatchedQueue();
+    private final Thread sampler;
+    private volatile boolean running = true;
+
+    /**
+     * Written by the EDT, read by the sampler
+     */
+    private volatile Thread edt;
+    private volatile long dispatchStart; // 0 when idle
+    private volatile long dispatchSeq;
+    private volatile AWTEvent dispatching;
+
+    /**
+     * DrawString call in progress (written by the EDT, read by the sampler)
+     */
+    private volatile String op;
+    private volatile long opSeq;
+    private volatile int opTextLength;
+    private volatile int opLineCount;
+    private volatile Rectangle opClip;
+
+    private EdtWatchdog(long thresholdMillis, int capacity) {
+        thresholdNanos = thresholdMillis * 1_000_000L;
+        ring = new Stall[capacity];
+
+        sampler = new Thread(this::sample, "EDT watchdog");
+        sampler.setDaemon(true);
+    }
+
+    /**
+     * Start watching the EDT. Only one watchdog can be installed at a time
+     *
+     * @param thresholdMillis How long a single event can run before it is
+     *                        reported
+     * @param capacity        How many stalls to keep (older ones are overwritten)
+     * @return The installed watchdog
+     */
+    public static synchronized EdtWatchdog install(long thresholdMillis, int capacity) {
+        if (active != null) {
+            throw new IllegalStateException("A watchdog is already installed");
+        }
+        if (thresholdMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Threshold and capacity must be positive");
+        }
+
+        EdtWatchdog res = new EdtWatchdog(thresholdMillis, capacity);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(res.queue);
+        res.sampler.start();
+        active = res;
+        return res;
+    }
+
+    /**
+     * Stop watching. Recorded stalls are kept. The event queue is popped if it
+     * is still the top one; if another was pushed over it since, it stays (so
+     * the other one isn't popped instead) and just stops timing
+     */
+    public void uninstall() {
+        synchronized (EdtWatchdog.class) {
+            if (active != this) {
+                return;
+            }
+            active = null;
+        }
+
+        running = false;
+        sampler.interrupt();
+        queue.unpush();
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @return Recorded stalls, oldest first
+     */
+    public synchronized List<Stall> stalls() {
+        List<Stall> res = new ArrayList<>(ring.length);
+        int n = (int) Math.min(total, ring.length);
+        for (int i = 0; i < n; i++) {
+            res.add(ring[Math.floorMod(next - n + i, ring.length)]);
+        }
+        return res;
+    }
+
+    /**
+     * @return Number of stalls seen, including ones no longer in the buffer
+     */
+    public synchronized long stallCount() {
+        return total;
+    }
+
+    /**
+     * Write every recorded stall (oldest first) to a text file
+     *
+     * @param file File to (over)write
+     * @throws IOException If the file cannot be written
+     */
+    public void dump(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            PrintWriter out = new PrintWriter(writer);
+            for (Stall stall : stalls()) {
+                stall.print(out);
+                out.println();
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Hooks for <code>DrawString</code>
+     */
+
+    /**
+     * @return Whether <code>DrawString</code> should report its calls
+     */
+    static boolean watching() {
+        return active != null;
+    }
+
+    /**
+     * Note the start of a <code>DrawString</code> call. Ignored off the EDT
+     *
+     * @param name       Method being run
+     * @param g          Graphics being drawn on
+     * @param textLength Number of characters being drawn
+     * @param lineCount  Number of lines being drawn
+     */
+    static void enter(String name, Graphics g, int textLength, int lineCount) {
+        EdtWatchdog w = active;
+        if (w == null || Thread.currentThread() != w.edt) {
+            return;
+        }
+
+        w.opClip = g.getClipBounds();
+        w.opTextLength = textLength;
+        w.opLineCount = lineCount;
+        w.opSeq = w.dispatchSeq;
+        w.op = name;
+    }
+
+    /**
+     * Note the end of a <code>DrawString</code> call
+     */
+    static void exit() {
+        EdtWatchdog w = active;
+        if (w != null && Thread.currentThread() == w.edt) {
+            w.op = null;
+        }
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * Sampler loop: look at the running dispatch a few times per threshold
+     */
+    private void sample() {
+        long period = Math.max(1, thresholdNanos / 4_000_000L);
+        long reportedSeq = -1;
+        boolean reportedOp = false;
+
+        while (running) {
+            try {
+                Thread.sleep(period);
+            } catch (InterruptedException e) {
+                continue; // Check running
+            }
+
+            long seq = dispatchSeq;
+            long start = dispatchStart;
+            if (start == 0) {
+                continue;
+            }
+
+            long blocked = System.nanoTime() - start;
+            if (blocked < thresholdNanos) {
+                continue;
+            }
+
+            // Only attribute the DrawString call if it belongs to this dispatch
+            String name = op;
+            boolean hasOp = name != null && opSeq == seq;
+
+            // Report each event once, plus once more if it gets stuck in DrawString later
+            if (seq == reportedSeq && (reportedOp || !hasOp)) {
+                continue;
+            }
+
+            Thread thread = edt;
+            StackTraceElement[] stack = thread == null ? new StackTraceElement[0] : thread.getStackTrace();
+            Stall stall = hasOp
+                ? new Stall(blocked, dispatching, stack, name, opTextLength, opLineCount, opClip)
+                : new Stall(blocked, dispatching, stack, null, 0, 0, null);
+
+            synchronized (this) {
+                ring[next] = stall;
+                next = (next + 1) % ring.length;
+                total++;
+            }
+            reportedSeq = seq;
+            reportedOp = hasOp;
+        }
+    }
+
+    /**
+     * Event queue timing each dispatch
+     */
+    private class WatchedQueue extends EventQueue {
+        private int depth;
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            if (!running) {
+                // Uninstalled, but another queue was pushed over this one
+                super.dispatchEvent(event);
+                return;
+            }
+            edt = Thread.currentThread();
+            AWTEvent outer = dispatching;
+
+            depth++;
+            dispatching = event;
+            dispatchSeq++;
+            dispatchStart = System.nanoTime();
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                depth--;
+                dispatching = outer;
+                // An outer event (e.g. one that opened a modal dialog) resumes now
+                dispatchStart = depth == 0 ? 0 : System.nanoTime();
+            }
+        }
+
+        /**
+         * Pop this queue if it is still the top one. <code>pop</code> removes
+         * the top queue, whichever it is
+         */
+        void unpush() {
+            if (Toolkit.getDefaultToolkit().getSystemEventQueue() == this) {
+                pop();
+            }
+        }
+    }
+
+    /**
+     * One event that ran past the threshold
+     */
+    public static final class Stall {
+        /**
+         * When the stall was seen
+         */
+        public final Instant time;
+        /**
+         * How long the event had been running when it was seen
+         */
+        public final long blockedNanos;
+        /**
+         * The event being dispatched
+         */
+        public final String event;
+        /**
+         * The EDT's stack when the stall was seen
+         */
+        public final StackTraceElement[] stack;
+        /**
+         * <code>DrawString</code> method in progress, or <code>null</code> if none
+         */
+        public final String op;
+        /**
+         * Characters being drawn by <code>op</code>
+         */
+        public final int textLength;
+        /**
+         * Lines being drawn by <code>op</code>
+         */
+        public final int lineCount;
+        /**
+         * Clip of the graphics <code>op</code> drew on, or <code>null</code> if
+         * unclipped or no op
+         */
+        public final Rectangle clip;
+
+        Stall(long blockedNanos, AWTEvent event, StackTraceElement[] stack,
+                String op, int textLength, int lineCount, Rectangle clip) {
+            this.time = Instant.now();
+            this.blockedNanos = blockedNanos;
+            this.event = event == null ? "?" : event.getClass().getName() + " from "
+                + (event.getSource() == null ? "null" : event.getSource().getClass().getName());
+            this.stack = stack;
+            this.op = op;
+            this.textLength = textLength;
+            this.lineCount = lineCount;
+            this.clip = clip;
+        }
+
+        void print(PrintWriter out) {
+            out.println(time + " EDT blocked " + blockedNanos / 1_000_000 + "ms in " + event);
+            if (op != null) {
+                out.println("  DrawString." + op + ": " + textLength + " chars, " + lineCount + " lines, clip "
+                    + (clip == null ? "none" : clip.x + "," + clip.y + " " + clip.width + "x" + clip.height));
+            }
+            for (StackTraceElement frame : stack) {
+                out.println("    at " + frame);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringWriter res = new StringWriter();
+            print(new PrintWriter(res));
+            return res.toString();
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+
+import gui.util.LatencyHistogram;
+
+/**
+ * Records a panel (or anything painted with <code>DrawString</code>) to a
+ * numbered image sequence without encoding on the EDT. For example
+ *
+ * <pre>
+ * FrameCapture capture = new FrameCapture(dir, panel.getWidth(), panel.getHeight(),
+ *         FrameCapture.Format.PNG, FrameCapture.DropPolicy.DROP_OLDEST, 8, 2);
+ * ...
+ * // Once per frame, on the EDT
+ * capture.capture(panel);
+ * ...
+ * capture.close();
+ * </pre>
+ *
+ * <code>capture</code> only paints into an image from a pool and hands it to a
+ * bounded queue; worker threads encode it to
+ * <code>frame-000042.png</code> (or <code>.raw</code>) and give the image back.
+ * When the queue is full the drop policy decides: wait for a worker
+ * (<code>BLOCK</code>, so every frame is kept but the EDT slows down), skip the
+ * new frame, or replace the oldest queued one. Dropped frames leave a gap in the
+ * numbering.
+ * <p>
+ * The pool never holds more than one image per queue slot and worker plus one,
+ * and images are only created when needed, so a steady capture reuses the same
+ * few images
+ */
+public class FrameCapture implements AutoCloseable {
+    /**
+     * How frames are written
+     */
+    public enum Format {
+        /**
+         * PNG via <code>ImageIO</code>
+         */
+        PNG,
+        /**
+         * Width and height (big-endian ints), then one RGB int per pixel, row by
+         * row. Much faster to write than PNG, and much bigger
+         */
+        RAW
+    }
+
+    /**
+     * What <code>capture</code> does when the queue is full
+     */
+    public enum DropPolicy {
+        /**
+         * Wait until a worker takes a frame
+         */
+        BLOCK,
+        /**
+         * Skip the new frame
+         */
+        DROP_NEWEST,
+        /**
+         * Skip the oldest queued frame to make room
+         */
+        DROP_OLDEST
+    }
+
+    private final Path dir;
+    private final int width;
+    private final int height;
+    private final Format format;
+    private final DropPolicy policy;
+
+    private final ArrayBlockingQueue<Frame> queue;
+    private final ArrayBlockingQueue<BufferedImage> free;
+    private final int poolSize;
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final Thread[] workers;
+    private volatile boolean closed;
+    /**
+     * Held (shared) while queueing a frame, and (exclusively) to close, so no
+     * frame is queued after the workers may have seen the queue drained
+     */
+    private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder encoded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile IOException lastError;
+
+    /**
+     * Time spent in <code>capture</code>, and from the start of
+     * <code>capture</code> to the file being written
+     */
+    private final LatencyHistogram captureLatency = new LatencyHistogram();
+    private final LatencyHistogram encodeLatency = new LatencyHistogram();
+
+    /**
+     * @param dir           Directory to write frames to (created if missing)
+     * @param width         Width of the frames
+     * @param height        Height of the frames
+     * @param format        How to write frames
+     * @param policy        What to do when the queue is full
+     * @param queueCapacity Maximum number of frames waiting to be written
+     * @param workerCount   Number of threads writing frames
+     * @throws IOException If dir can't be created
+     */
+    public FrameCapture(Path dir, int width, int height, Format format, DropPolicy policy, int queueCapacity,
+            int workerCount) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive: " + width + "x" + height);
+        }
+        if (queueCapacity <= 0 || workerCount <= 0) {
+            throw new IllegalArgumentException("Queue capacity and worker count must be positive: " + queueCapacity
+                + ", " + workerCount);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.width = width;
+        this.height = height;
+        this.format = Objects.requireNonNull(format);
+        this.policy = Objects.requireNonNull(policy);
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        // One image being painted, one per queue slot and one per worker
+        poolSize = queueCapacity + workerCount + 1;
+        free = new ArrayBlockingQueue<>(poolSize);
+
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::work, "Frame capture " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Capture a frame. The image is cleared to white first
+     *
+     * @param painter Paints the frame (on the calling thread)
+     * @return Whether the frame was queued (<code>false</code> if it was
+     *         dropped or this is closed)
+     */
+    public boolean capture(Consumer<Graphics2D> painter) {
+        long start = System.nanoTime();
+        if (closed) {
+            return false;
+        }
+        if (policy == DropPolicy.DROP_NEWEST && queue.remainingCapacity() == 0) {
+            // Don't bother painting a frame that has nowhere to go
+            dropped.increment();
+            captureLatency.record(System.nanoTime() - start);
+            return false;
+        }
+
+        BufferedImage image = acquire();
+        if (image == null) {
+            return false;
+        }
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setBackground(Color.WHITE);
+            g.clearRect(0, 0, width, height);
+            painter.accept(g);
+        } finally {
+            g.dispose();
+        }
+
+        boolean res = enqueue(new Frame(image, sequence.getAndIncrement(), start));
+        captureLatency.record(System.nanoTime() - start);
+        return res;
+    }
+
+    /**
+     * Capture a frame of a component, painted at its top left. Should be called
+     * on the EDT
+     *
+     * @param comp Component to paint
+     * @return Whether the frame was queued
+     */
+    public boolean capture(Component comp) {
+        return capture((Consumer<Graphics2D>) comp::paint);
+    }
+
+    /**
+     * Write every queued frame, then stop the workers. Frames captured after
+     * this are dropped. If interrupted, returns early with the interrupt flag
+     * set and the workers finishing in the background
+     */
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @return Number of frames queued
+     */
+    public long captured() {
+        return captured.sum();
+    }
+
+    /**
+     * @return Number of frames dropped by the drop policy
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Number of frames written
+     */
+    public long encoded() {
+        return encoded.sum();
+    }
+
+    /**
+     * @return Number of frames that failed to be written
+     */
+    public long failed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return Last error writing a frame (unchecked ones wrapped), or
+     *         <code>null</code>
+     */
+    public IOException lastError() {
+        return lastError;
+    }
+
+    /**
+     * @return Time spent in <code>capture</code> (painting, and waiting with
+     *         <code>BLOCK</code>)
+     */
+    public LatencyHistogram captureLatency() {
+        return captureLatency;
+    }
+
+    /**
+     * @return Time from the start of <code>capture</code> to the frame being
+     *         written
+     */
+    public LatencyHistogram encodeLatency() {
+        return encodeLatency;
+    }
+
+    /**
+     * @return Number of images created for the pool so far
+     */
+    public int pooledImages() {
+        return allocated.get();
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * @return An image from the pool, a new one if the pool isn't full yet, or
+     *         <code>null</code> if interrupted waiting for one
+     */
+    private BufferedImage acquire() {
+        BufferedImage res = free.poll();
+        if (res != null) {
+            return res;
+        }
+        if (allocated.getAndIncrement() < poolSize) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        allocated.decrementAndGet();
+        try {
+            // Only when several threads capture at once
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Queue a frame as the drop policy says, unless this was closed meanwhile
+     */
+    private boolean enqueue(Frame frame) {
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                free.offer(frame.image);
+                return false;
+            }
+            return offer(frame);
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    private boolean offer(Frame frame) {
+        switch (policy) {
+        case BLOCK:
+            try {
+                queue.put(frame);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                free.offer(frame.image);
+                return false;
+            }
+            break;
+
+        case DROP_NEWEST:
+            if (!queue.offer(frame)) {
+                free.offer(frame.image);
+                dropped.increment();
+                return false;
+            }
+            break;
+
+        case DROP_OLDEST:
+            while (!queue.offer(frame)) {
+                Frame oldest = queue.poll();
+                if (oldest != null) {
+                    free.offer(oldest.image);
+                    dropped.increment();
+                }
+            }
+            break;
+
+        default:
+            throw new AssertionError(policy);
+        }
+        captured.increment();
+        return true;
+    }
+
+    /**
+     * Worker loop: write frames until closed and the queue is empty
+     */
+    private void work() {
+        // Reused for raw frames
+        ByteBuffer buffer = null;
+        while (true) {
+            Frame frame;
+            try {
+                frame = queue.poll(50, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame == null) {
+                if (closed && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                Path file = dir.resolve(String.format("frame-%06d.%s", frame.sequence,
+                        format == Format.PNG ? "png" : "raw"));
+                if (format == Format.PNG) {
+                    ImageIO.write(frame.image, "png", file.toFile());
+                } else {
+                    if (buffer == null) {
+                        buffer = ByteBuffer.allocateDirect(8 + 4 * width * height);
+                    }
+                    writeRaw(frame.image, buffer, file);
+                }
+                encoded.increment();
+                encodeLatency.record(System.nanoTime() - frame.start);
+            } catch (IOException e) {
+                failed.increment();
+                lastError = e;
+            } catch (RuntimeException e) {
+                // E.g. from a broken ImageIO writer; the worker must go on, or
+                // BLOCK would stall capture for good
+                failed.increment();
+                lastError = new IOException("Could not write frame " + frame.sequence, e);
+            } finally {
+                free.offer(frame.image);
+            }
+        }
+    }
+
+    private void writeRaw(BufferedImage image, ByteBuffer buffer, Path file) throws IOException {
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        buffer.clear();
+        buffer.putInt(width).putInt(height);
+        buffer.asIntBuffer().put(pixels, 0, width * height);
+        buffer.limit(8 + 4 * width * height);
+        buffer.position(0);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * A painted image waiting to be written
+     */
+    private static final class Frame {
+        final BufferedImage image;
+        final long sequence;
+        final long start;
+
+        Frame(BufferedImage image, long sequence, long start) {
+            this.image = image;
+            this.sequence = sequence;
+            this.start = start;
+        }
+    }
+}
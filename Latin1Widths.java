@@ -0,0 +1,61 @@
+package gui;
+
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+
+/**
+ * Fast text measurement for the common case of Latin-1 text (which includes
+ * ASCII): a sum over the font's per-char advance table, instead of
+ * <code>FontMetrics.stringWidth</code>.
+ * <p>
+ * Only used where it gives exactly the same widths: the font has no kerning,
+ * ligatures or other layout attributes, fractional metrics are off (so each
+ * advance is a whole number), and the rendering context is not scaled. Text
+ * with any char past U+00FF (where bidi, combining marks and
+ * complex scripts live) is measured the normal way
+ */
+final class Latin1Widths {
+    private Latin1Widths() {
+    }
+
+    /**
+     * @param fm Metrics to measure with
+     * @return Advance of each char below 256, or <code>null</code> if the fast
+     *         path would not match <code>fm.stringWidth</code>
+     */
+    static int[] table(FontMetrics fm) {
+        FontRenderContext frc = fm.getFontRenderContext();
+        if (fm.getFont().hasLayoutAttributes() || frc.usesFractionalMetrics() || frc.isTransformed()) {
+            return null;
+        }
+        return fm.getWidths();
+    }
+
+    /**
+     * @param table Table from <code>table</code>
+     * @param text  Text to measure
+     * @return Width of text, or -1 if it has chars outside Latin-1
+     */
+    static int width(int[] table, String text) {
+        int res = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c > 0xFF) {
+                return -1;
+            }
+            res += table[c];
+        }
+        return res;
+    }
+
+    /**
+     * @param fm    Metrics to measure with
+     * @param table Table from <code>table(fm)</code>, or <code>null</code>
+     * @param text  Text to measure
+     * @return Width of text, the fast way if possible
+     */
+    static int width(FontMetrics fm, int[] table, String text) {
+        int res = table == null ? -1 : width(table, text);
+        return res >= 0 ? res : fm.stringWidth(text);
+    }
+}
@@ -0,0 +1,258 @@
+package gui;
+
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+import javax.swing.Timer;
+
+/**
+ * Keeps components positioned relative to others (with <code>Positioner</code>
+ * rules) as the others move or resize. For example
+ *
+ * <pre>
+ * LayoutBinder binder = new LayoutBinder();
+ * binder.bind(nameField, nameLabel, Positioner::right);
+ * binder.bind(ageField, nameField, Positioner::under);
+ * </pre>
+ *
+ * Moving <code>nameLabel</code> now moves <code>nameField</code>, and with it
+ * <code>ageField</code>.
+ * <p>
+ * Bounds changes only mark the dependents dirty. Dirty components are
+ * recomputed at most once per frame, references before their dependents, so a
+ * window drag that resizes a component hundreds of times a second costs one
+ * pass per frame. The events caused by the binder's own <code>setBounds</code>
+ * calls are recognized and ignored. Like other Swing code, it must only be used
+ * on the EDT
+ */
+public class LayoutBinder {
+    /**
+     * Default maximum number of relayouts per second
+     */
+    public static final int DEFAULT_RATE = 60;
+
+    private final HashMap<Component, Node> nodes = new HashMap<>();
+    private final PriorityQueue<Node> dirty = new PriorityQueue<>((a, b) -> Integer.compare(a.depth, b.depth));
+    private final ComponentListener listener = new ComponentAdapter() {
+        @Override
+        public void componentMoved(ComponentEvent e) {
+            moved(e.getComponent());
+        }
+
+        @Override
+        public void componentResized(ComponentEvent e) {
+            moved(e.getComponent());
+        }
+    };
+    private final Timer timer;
+
+    private long relayouts;
+    private long ignored;
+
+    /**
+     * @param maxRate Maximum number of relayouts per second
+     */
+    public LayoutBinder(int maxRate) {
+        timer = new Timer(1000 / Math.max(1, maxRate), e -> flush());
+        timer.setRepeats(false);
+        timer.setCoalesce(true);
+    }
+
+    public LayoutBinder() {
+        this(DEFAULT_RATE);
+    }
+
+    /**
+     * Position dependent by rule now, and again whenever ref moves or resizes
+     *
+     * @param dependent Component to position
+     * @param ref       Component it is positioned against
+     * @param rule      Bounds of dependent given ref (e.g.
+     *                  <code>Positioner::under</code>)
+     * @throws IllegalArgumentException If dependent is already bound, or this
+     *                                  would make a cycle
+     */
+    public void bind(Component dependent, Component ref, Function<Component, Rectangle> rule) {
+        Objects.requireNonNull(rule);
+        // Depths are about to change; settle the queue first
+        flush();
+        Node node = node(dependent);
+        if (node.rule != null) {
+            throw new IllegalArgumentException("Already bound: " + dependent);
+        }
+        Node refNode = node(ref);
+        for (Node n = refNode; n != null; n = n.ref) {
+            if (n == node) {
+                throw new IllegalArgumentException("Binding would make a cycle: " + dependent);
+            }
+        }
+
+        if (refNode.dependents.isEmpty()) {
+            ref.addComponentListener(listener);
+        }
+        refNode.dependents.add(node);
+        node.ref = refNode;
+        node.rule = rule;
+        node.setDepth(refNode.depth + 1);
+
+        node.apply();
+        markDependents(node);
+        flush();
+    }
+
+    /**
+     * Stop positioning dependent. Components bound to it stay bound
+     *
+     * @param dependent Component to stop positioning
+     */
+    public void unbind(Component dependent) {
+        Node node = nodes.get(dependent);
+        if (node == null || node.rule == null) {
+            return;
+        }
+
+        flush();
+        Node refNode = node.ref;
+        refNode.dependents.remove(node);
+        if (refNode.dependents.isEmpty()) {
+            refNode.component.removeComponentListener(listener);
+        }
+        node.ref = null;
+        node.rule = null;
+        node.setDepth(0);
+        forget(refNode);
+        forget(node);
+    }
+
+    /**
+     * Recompute every dirty component now instead of at the next frame
+     */
+    public void flush() {
+        timer.stop();
+        while (!dirty.isEmpty()) {
+            Node node = dirty.poll();
+            node.dirty = false;
+            if (node.apply()) {
+                markDependents(node);
+            }
+        }
+    }
+
+    /**
+     * @param maxRate Maximum number of relayouts per second
+     */
+    public void setMaxRate(int maxRate) {
+        timer.setInitialDelay(1000 / Math.max(1, maxRate));
+        timer.setDelay(timer.getInitialDelay());
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @return Number of times a rule was recomputed
+     */
+    public long relayouts() {
+        return relayouts;
+    }
+
+    /**
+     * @return Number of bounds events caused by this binder (and so ignored)
+     */
+    public long ignored() {
+        return ignored;
+    }
+
+    /**
+     * Private Methods
+     */
+
+    private void moved(Component ref) {
+        Node node = nodes.get(ref);
+        if (node == null) {
+            return;
+        }
+        // Events arrive after the fact; ours match what we last set
+        if (node.applied != null && node.applied.equals(ref.getBounds())) {
+            ignored++;
+            return;
+        }
+        node.applied = null;
+        markDependents(node);
+        if (!dirty.isEmpty() && !timer.isRunning()) {
+            timer.restart();
+        }
+    }
+
+    private void markDependents(Node node) {
+        for (Node dependent : node.dependents) {
+            if (!dependent.dirty) {
+                dependent.dirty = true;
+                dirty.add(dependent);
+            }
+        }
+    }
+
+    private Node node(Component component) {
+        return nodes.computeIfAbsent(Objects.requireNonNull(component), Node::new);
+    }
+
+    private void forget(Node node) {
+        if (node.rule == null && node.dependents.isEmpty()) {
+            nodes.remove(node.component);
+        }
+    }
+
+    /**
+     * A component and how it is positioned
+     */
+    private final class Node {
+        final Component component;
+        final ArrayList<Node> dependents = new ArrayList<>();
+        Node ref;
+        Function<Component, Rectangle> rule;
+        /**
+         * Number of references above it, so references are recomputed first
+         */
+        int depth;
+        boolean dirty;
+        /**
+         * Bounds last set by the binder, until something else moves it
+         */
+        Rectangle applied;
+
+        Node(Component component) {
+            this.component = component;
+        }
+
+        /**
+         * @return Whether the bounds changed
+         */
+        boolean apply() {
+            relayouts++;
+            Rectangle bounds = rule.apply(ref.component);
+            if (bounds.equals(component.getBounds())) {
+                return false;
+            }
+            applied = bounds;
+            component.setBounds(bounds);
+            return true;
+        }
+
+        void setDepth(int newDepth) {
+            depth = newDepth;
+            for (Node dependent : dependents) {
+                dependent.setDepth(newDepth + 1);
+            }
+        }
+    }
+}
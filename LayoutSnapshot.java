@@ -0,0 +1,235 @@
+package gui;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Text widths and layout results saved from one launch for the next, so the
+ * first frame does not have to measure every caption again. For example
+ *
+ * <pre>
+ * TextMetricsCache widths = TextMetricsCache.of(g);
+ * LayoutSnapshot snapshot = LayoutSnapshot.load(file, widths);
+ * DrawString drawer = new DrawString(g, widths);
+ * Rectangle form = snapshot.layout("form:" + fields.size(), () -&gt; layOutForm());
+ * ...
+ * snapshot.save(file);
+ * </pre>
+ *
+ * A snapshot is only used if it was saved for the same font, size, DPI scale
+ * and text hints as <code>widths</code>, and passes its checksum; otherwise it
+ * is ignored and everything is computed (and saved) as usual. Entries are keyed
+ * by a 64 bit hash of their text or id, not the text itself.
+ * <p>
+ * File layout (big-endian): magic, version, metrics key (UTF-8, length
+ * prefixed), width count, layout count, CRC32 of the entries, then
+ * <code>(hash, width)</code> and <code>(hash, x, y, width, height)</code>
+ * entries
+ */
+public class LayoutSnapshot {
+    static final int MAGIC = 0x474C5331; // "GLS1"
+    static final int VERSION = 1;
+
+    private static final int WIDTH_ENTRY = Long.BYTES + Integer.BYTES;
+    private static final int LAYOUT_ENTRY = Long.BYTES + 4 * Integer.BYTES;
+
+    private final TextMetricsCache widths;
+    private final HashMap<Long, Rectangle> layouts = new HashMap<>();
+    private final boolean loaded;
+
+    private LayoutSnapshot(TextMetricsCache widths, boolean loaded) {
+        this.widths = widths;
+        this.loaded = loaded;
+    }
+
+    /**
+     * Load a snapshot into <code>widths</code>. A missing, stale or corrupt file
+     * gives an empty snapshot
+     *
+     * @param file   Snapshot file
+     * @param widths Cache for the font being drawn with
+     * @return Snapshot to look layouts up in and save later
+     * @throws IOException If the file exists but cannot be read
+     */
+    public static LayoutSnapshot load(Path file, TextMetricsCache widths) throws IOException {
+        // Read onto the heap rather than mapped: everything is copied out
+        // anyway, and a mapping outliving load keeps the file locked on
+        // Windows, so save could not replace it
+        ByteBuffer in;
+        try {
+            in = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return new LayoutSnapshot(widths, false);
+        }
+
+        LayoutSnapshot res = new LayoutSnapshot(widths, true);
+        if (!res.read(in)) {
+            return new LayoutSnapshot(widths, false);
+        }
+        return res;
+    }
+
+    /**
+     * @param widths Cache for the font being drawn with
+     * @return Snapshot with nothing in it yet
+     */
+    public static LayoutSnapshot empty(TextMetricsCache widths) {
+        return new LayoutSnapshot(widths, false);
+    }
+
+    /**
+     * @param id      Id of the layout. Include anything the result depends on
+     *                (e.g. the captions involved)
+     * @param compute Computes the layout if it is not in the snapshot
+     * @return Saved or computed layout (a copy; safe to modify)
+     */
+    public Rectangle layout(String id, Supplier<Rectangle> compute) {
+        Long key = TextMetricsCache.hash(id);
+        Rectangle res;
+        synchronized (layouts) {
+            res = layouts.get(key);
+        }
+        if (res == null) {
+            res = new Rectangle(compute.get());
+            synchronized (layouts) {
+                layouts.put(key, res);
+            }
+        }
+        return new Rectangle(res);
+    }
+
+    /**
+     * Write every width and layout known so far. The file is replaced
+     * atomically, so a crash never leaves a half written snapshot
+     *
+     * @param file Snapshot file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        ArrayList<long[]> widthEntries = new ArrayList<>();
+        widths.forEach((hash, width) -> widthEntries.add(new long[] { hash, width }));
+        HashMap<Long, Rectangle> layoutEntries;
+        synchronized (layouts) {
+            layoutEntries = new HashMap<>(layouts);
+        }
+
+        byte[] key = widths.key().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entries = ByteBuffer.allocate(widthEntries.size() * WIDTH_ENTRY + layoutEntries.size() * LAYOUT_ENTRY);
+        for (long[] entry : widthEntries) {
+            entries.putLong(entry[0]).putInt((int) entry[1]);
+        }
+        for (Map.Entry<Long, Rectangle> entry : layoutEntries.entrySet()) {
+            Rectangle r = entry.getValue();
+            entries.putLong(entry.getKey()).putInt(r.x).putInt(r.y).putInt(r.width).putInt(r.height);
+        }
+        entries.flip();
+
+        ByteBuffer header = ByteBuffer.allocate(4 * Integer.BYTES + Short.BYTES + key.length + Long.BYTES);
+        header.putInt(MAGIC).putInt(VERSION)
+            .putShort((short) key.length).put(key)
+            .putInt(widthEntries.size()).putInt(layoutEntries.size())
+            .putLong(crc(entries));
+        header.flip();
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer[] buffers = { header, entries };
+                while (header.hasRemaining() || entries.hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @return Whether a valid snapshot was loaded (false on a cold start)
+     */
+    public boolean loaded() {
+        return loaded;
+    }
+
+    /**
+     * @return Number of layouts known
+     */
+    public int layoutCount() {
+        synchronized (layouts) {
+            return layouts.size();
+        }
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * @param in Whole file
+     * @return Whether the file was valid for <code>widths</code> (and loaded)
+     */
+    private boolean read(ByteBuffer in) {
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return false;
+            }
+            byte[] key = new byte[in.getShort() & 0xFFFF];
+            in.get(key);
+            if (!widths.key().equals(new String(key, StandardCharsets.UTF_8))) {
+                return false;
+            }
+
+            int widthCount = in.getInt();
+            int layoutCount = in.getInt();
+            long crc = in.getLong();
+            if (widthCount < 0 || layoutCount < 0
+                    || in.remaining() != (long) widthCount * WIDTH_ENTRY + (long) layoutCount * LAYOUT_ENTRY
+                    || crc(in.slice()) != crc) {
+                return false;
+            }
+
+            long[] hashes = new long[widthCount];
+            int[] values = new int[widthCount];
+            for (int i = 0; i < widthCount; i++) {
+                hashes[i] = in.getLong();
+                values[i] = in.getInt();
+            }
+            for (int i = 0; i < layoutCount; i++) {
+                layouts.put(in.getLong(), new Rectangle(in.getInt(), in.getInt(), in.getInt(), in.getInt()));
+            }
+            widths.load(hashes, values);
+            return true;
+        } catch (RuntimeException e) {
+            // Truncated or garbled; BufferUnderflowException etc.
+            layouts.clear();
+            return false;
+        }
+    }
+
+    private static long crc(ByteBuffer entries) {
+        CRC32 crc = new CRC32();
+        crc.update(entries.duplicate());
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,301 @@
+package gui;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Per-line metrics for huge documents (hundreds of millions of lines) kept off
+ * the Java heap: where each line starts in the document, its width in pixels,
+ * and how many rows it takes once wrapped. A virtualized viewer built on
+ * <code>DrawString.drawLines</code> appends lines as it measures them, then
+ * maps scroll positions to lines without touching the rest. For example
+ *
+ * <pre>
+ * LineMetricsStore lines = new LineMetricsStore();
+ * // While loading, from any one thread
+ * lines.append(byteOffset, drawer.width(line), rowsOf(line));
+ * ...
+ * // In paintComponent
+ * long first = lines.lineAtRow(clip.y / drawer.height());
+ * </pre>
+ *
+ * Each line is a 24-byte record (offset, first row, width, rows) in direct
+ * <code>ByteBuffer</code>s of 65536 lines each, so the heap only holds one
+ * reference per chunk and the garbage collector never scans the records. With
+ * a spill file the chunks are memory-mapped from it instead, so the OS can page
+ * them out. Storing the first row of each line makes row lookups a binary
+ * search. Direct buffers count against <code>-XX:MaxDirectMemorySize</code>
+ * (by default the maximum heap size), about 2.4GB per 100 million lines, so
+ * use a spill file for the largest documents.
+ * <p>
+ * Lines can only be appended (or cut off the end with <code>truncate</code>).
+ * One thread may append while others read: lines are visible to readers once
+ * <code>append</code> returns
+ */
+public class LineMetricsStore implements AutoCloseable {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_LINES = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_LINES - 1;
+
+    /**
+     * Record layout
+     */
+    private static final int OFFSET = 0;
+    private static final int FIRST_ROW = 8;
+    private static final int WIDTH = 16;
+    private static final int ROWS = 20;
+    private static final int RECORD = 24;
+    private static final long CHUNK_BYTES = (long) RECORD * CHUNK_LINES;
+
+    /**
+     * <code>null</code> if chunks are direct buffers
+     */
+    private final FileChannel spill;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[16];
+    private int chunkCount;
+    /**
+     * Written last by <code>append</code>, so readers that see a line also see
+     * its record
+     */
+    private volatile long lineCount;
+    /**
+     * Writer only: first row of the next line
+     */
+    private long nextRow;
+    private volatile int maxWidth;
+
+    /**
+     * Store in direct buffers
+     */
+    public LineMetricsStore() {
+        spill = null;
+    }
+
+    /**
+     * Store in a memory-mapped file
+     *
+     * @param spill File to store in. It is overwritten. Mappings outlive
+     *              <code>close</code> until the garbage collector frees them,
+     *              and until then Windows won't let the file be deleted or
+     *              reused, so use a new file per store (e.g. a temp file
+     *              deleted on exit)
+     * @throws IOException If the file can't be opened
+     */
+    public LineMetricsStore(Path spill) throws IOException {
+        this.spill = FileChannel.open(spill, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Add a line after the last one
+     *
+     * @param offset Where the line starts in the document (not before the
+     *               previous line's offset)
+     * @param width  Width in pixels
+     * @param rows   Rows taken once wrapped (0 for a hidden line)
+     * @throws IOException If the spill file can't grow
+     */
+    public void append(long offset, int width, int rows) throws IOException {
+        long line = lineCount;
+        if (width < 0 || rows < 0) {
+            throw new IllegalArgumentException("Width and rows can't be negative: " + width + ", " + rows);
+        }
+        if (line > 0 && offset < offset(line - 1)) {
+            throw new IllegalArgumentException("Offset " + offset + " is before the previous line's " + offset(line - 1));
+        }
+
+        int chunk = (int) (line >>> CHUNK_BITS);
+        if (chunk == chunkCount) {
+            addChunk();
+        }
+        ByteBuffer buffer = chunks[chunk];
+        int at = (int) (line & CHUNK_MASK) * RECORD;
+        buffer.putLong(at + OFFSET, offset);
+        buffer.putLong(at + FIRST_ROW, nextRow);
+        buffer.putInt(at + WIDTH, width);
+        buffer.putInt(at + ROWS, rows);
+
+        nextRow += rows;
+        if (width > maxWidth) {
+            maxWidth = width;
+        }
+        lineCount = line + 1;
+    }
+
+    /**
+     * Forget lines from <code>lines</code> on (e.g. to re-measure the last,
+     * still growing line). Chunks are kept for reuse. <code>maxWidth</code> is
+     * not lowered
+     *
+     * @param lines Number of lines to keep
+     */
+    public void truncate(long lines) {
+        if (lines < 0 || lines > lineCount) {
+            throw new IndexOutOfBoundsException("Can't truncate " + lineCount + " lines to " + lines);
+        }
+        if (lines < lineCount) {
+            nextRow = firstRow(lines);
+            lineCount = lines;
+        }
+    }
+
+    /**
+     * Release the storage. Nothing can be read afterwards. Direct buffers and
+     * mappings of a spill file are freed once garbage collected, not here
+     *
+     * @throws IOException If the spill file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        lineCount = 0;
+        nextRow = 0;
+        chunks = new ByteBuffer[0];
+        chunkCount = 0;
+        if (spill != null) {
+            spill.close();
+        }
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @return Number of lines
+     */
+    public long lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return Number of rows all lines take
+     */
+    public long totalRows() {
+        long lines = lineCount;
+        return lines == 0 ? 0 : firstRow(lines - 1) + rows(lines - 1);
+    }
+
+    /**
+     * @return Width of the widest line appended so far
+     */
+    public int maxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * @param line Line index
+     * @return Where the line starts in the document
+     */
+    public long offset(long line) {
+        return chunk(line).getLong(at(line) + OFFSET);
+    }
+
+    /**
+     * @param line Line index
+     * @return Width of the line in pixels
+     */
+    public int width(long line) {
+        return chunk(line).getInt(at(line) + WIDTH);
+    }
+
+    /**
+     * @param line Line index
+     * @return Rows the line takes
+     */
+    public int rows(long line) {
+        return chunk(line).getInt(at(line) + ROWS);
+    }
+
+    /**
+     * @param line Line index
+     * @return Row the line starts on (rows of all lines before it)
+     */
+    public long firstRow(long line) {
+        return chunk(line).getLong(at(line) + FIRST_ROW);
+    }
+
+    /**
+     * @param row Row, e.g. y / line height
+     * @return Line shown on that row (the last line if row is past the end), or
+     *         -1 if there are no lines
+     */
+    public long lineAtRow(long row) {
+        // Last line starting at or before row. A hidden line shares its first
+        // row with the next line, so it is never the last one unless at the end
+        long lo = 0;
+        long hi = lineCount - 1;
+        if (hi < 0) {
+            return -1;
+        }
+        while (lo < hi) {
+            long mid = (lo + hi + 1) >>> 1;
+            if (firstRow(mid) <= row) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param offset Position in the document
+     * @return Line holding that position, or -1 if it is before the first line
+     */
+    public long lineAtOffset(long offset) {
+        long lo = -1;
+        long hi = lineCount - 1;
+        while (lo < hi) {
+            long mid = (lo + hi + 1) >>> 1;
+            if (offset(mid) <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return Bytes of storage outside the heap
+     */
+    public long offHeapBytes() {
+        return chunkCount * CHUNK_BYTES;
+    }
+
+    /**
+     * Private Methods
+     */
+
+    private ByteBuffer chunk(long line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + line + " of " + lineCount);
+        }
+        return chunks[(int) (line >>> CHUNK_BITS)];
+    }
+
+    private static int at(long line) {
+        return (int) (line & CHUNK_MASK) * RECORD;
+    }
+
+    private void addChunk() throws IOException {
+        ByteBuffer chunk = spill == null
+            ? ByteBuffer.allocateDirect((int) CHUNK_BYTES)
+            : spill.map(FileChannel.MapMode.READ_WRITE, chunkCount * CHUNK_BYTES, CHUNK_BYTES);
+        chunk.order(ByteOrder.nativeOrder());
+
+        ByteBuffer[] current = chunks;
+        if (chunkCount == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[chunkCount++] = chunk;
+        // Publish the (possibly new) array before any line in the chunk
+        chunks = current;
+    }
+}
@@ -0,0 +1,245 @@
+package gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.swing.JComponent;
+import javax.swing.JTextField;
+import javax.swing.Timer;
+
+/**
+ * Rate-limited bindings from producer threads to text fields and drawn labels.
+ * <p>
+ * Each binding owns a slot holding only the latest value. Producers can call
+ * {@link #set(int, String)} from any thread as often as they like; once per
+ * frame the EDT publishes whatever slots changed and everything in between is
+ * coalesced away. For example
+ *
+ * <pre>
+ * LiveValues live = new LiveValues(64, 30);
+ * int speed = live.bind(Components.textField(&lt;bounds&gt;, this));
+ * int temp = live.bind(this); // label drawn in paintComponent
+ * live.start();
+ * ...
+ * // From any thread
+ * live.set(speed, "42 km/h");
+ * ...
+ * // In paintComponent
+ * drawer.drawRight(live.get(temp), someComponent);
+ * </pre>
+ */
+public class LiveValues {
+    /**
+     * Default maximum number of publishes per second
+     */
+    public static final int DEFAULT_RATE = 60;
+
+    /**
+     * Latest unpublished value per slot (<code>null</code> if nothing pending)
+     */
+    private final AtomicReferenceArray<String> pending;
+    /**
+     * Set by producers whenever any slot gets a new value
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * EDT only: what each slot currently shows
+     */
+    private final String[] shown;
+    /**
+     * EDT only: field to update or component to repaint for each slot
+     */
+    private final JComponent[] targets;
+    private int size;
+
+    private final Timer timer;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity Maximum number of bindings
+     * @param maxRate  Maximum number of publishes per second
+     */
+    public LiveValues(int capacity, int maxRate) {
+        pending = new AtomicReferenceArray<>(capacity);
+        shown = new String[capacity];
+        targets = new JComponent[capacity];
+
+        timer = new Timer(delayOf(maxRate), new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                publish();
+            }
+        });
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * @param capacity Maximum number of bindings
+     */
+    public LiveValues(int capacity) {
+        this(capacity, DEFAULT_RATE);
+    }
+
+    /**
+     * Binding. Should be called on the EDT
+     */
+
+    /**
+     * Bind a slot to a text field (e.g. one from <code>Components.textField</code>).
+     * Published values are passed to <code>setText</code>
+     *
+     * @param field Field to update
+     * @return Slot to <code>set</code> values on
+     */
+    public int bind(JTextField field) {
+        int slot = bind((JComponent) field);
+        shown[slot] = field.getText();
+        return slot;
+    }
+
+    /**
+     * Bind a slot to a label drawn during <code>owner</code>'s paint (e.g. with
+     * <code>DrawString.drawRight</code>). Published values make <code>owner</code>
+     * repaint and can be read back with <code>get</code>
+     *
+     * @param owner Component whose paint draws the value
+     * @return Slot to <code>set</code> values on
+     */
+    public int bind(JComponent owner) {
+        if (size == targets.length) {
+            throw new IllegalStateException("All " + targets.length + " slots are bound");
+        }
+
+        targets[size] = Objects.requireNonNull(owner);
+        shown[size] = "";
+        return size++;
+    }
+
+    /**
+     * Start publishing
+     */
+    public void start() {
+        timer.start();
+    }
+
+    /**
+     * Stop publishing. Pending values are kept until the next <code>start</code>
+     */
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * @param maxRate Maximum number of publishes per second
+     */
+    public void setMaxRate(int maxRate) {
+        timer.setDelay(delayOf(maxRate));
+    }
+
+    /**
+     * Producer side. Safe from any thread
+     */
+
+    /**
+     * Offer a new value for a slot. Only the latest value offered before the next
+     * publish is shown
+     *
+     * @param slot  Slot returned by <code>bind</code>
+     * @param value New value
+     */
+    public void set(int slot, String value) {
+        if (pending.getAndSet(slot, Objects.requireNonNull(value)) != null) {
+            // Overwrote a value that was never shown
+            coalesced.increment();
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @param slot Slot returned by <code>bind</code>
+     * @return Last published value of the slot. Should be called on the EDT
+     */
+    public String get(int slot) {
+        return shown[slot];
+    }
+
+    /**
+     * @return Number of values shown
+     */
+    public long published() {
+        return published.sum();
+    }
+
+    /**
+     * @return Number of values replaced by a newer one before being shown
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return Number of values skipped because they equalled what was already
+     *         shown
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * One frame: push every changed slot to its target. Runs on the EDT
+     */
+    private void publish() {
+        // Producers set the slot before the flag, so clearing first never loses one
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            String value = pending.getAndSet(i, null);
+            if (value == null) {
+                continue;
+            }
+            if (value.equals(shown[i])) {
+                dropped.increment();
+                continue;
+            }
+
+            shown[i] = value;
+            published.increment();
+
+            JComponent target = targets[i];
+            if (target instanceof JTextField) {
+                ((JTextField) target).setText(value);
+            } else {
+                target.repaint();
+            }
+        }
+    }
+
+    /**
+     * @param rate Publishes per second
+     * @return Timer delay in milliseconds
+     */
+    private static int delayOf(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+        return Math.max(1, 1000 / rate);
+    }
+}
@@ -0,0 +1,342 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+
+import javax.swing.JComponent;
+
+/**
+ * Live log pane that scrolls by moving pixels instead of repainting every line.
+ * <p>
+ * Visible lines are kept in a backing image. Scrolling shifts it with
+ * <code>copyArea</code> and only the newly exposed lines are drawn (with
+ * <code>DrawString.drawLines</code>), so following the tail of a fast stream
+ * costs the new lines per frame, not the whole view. The backing image is
+ * redrawn in full when the size, font or colors change, or when a volatile
+ * backing image loses its contents. For example
+ *
+ * <pre>
+ * LogView log = new LogView();
+ * log.setBounds(&lt;bounds&gt;);
+ * panel.add(log);
+ * ...
+ * // On the EDT
+ * log.append("12:00:01 connected");
+ * </pre>
+ *
+ * Like other Swing components, it must only be used on the EDT
+ */
+public class LogView extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<String> lines = new ArrayList<>();
+    private int top;
+    private boolean followTail = true;
+
+    private Image backing;
+    /**
+     * First line in the backing image, or -1 if it must be redrawn in full
+     */
+    private int backingTop = -1;
+    /**
+     * Lines changed since the last paint
+     */
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private int dirtyTo = Integer.MIN_VALUE;
+
+    public LogView() {
+        setOpaque(true);
+        setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        setBackground(Color.WHITE);
+        setForeground(Color.BLACK);
+
+        addMouseWheelListener(e -> scrollTo(top + e.getWheelRotation() * 3));
+    }
+
+    /**
+     * Lines
+     */
+
+    /**
+     * Add a line at the end. If following the tail, scroll to show it
+     *
+     * @param line Line to add (without newlines)
+     */
+    public void append(String line) {
+        lines.add(line);
+        int index = lines.size() - 1;
+
+        if (followTail && index >= top + rows()) {
+            scrollTo(lines.size() - rows());
+        } else {
+            dirty(index, index + 1);
+        }
+    }
+
+    /**
+     * @param newLines Lines to add at the end
+     */
+    public void append(String[] newLines) {
+        for (String line : newLines) {
+            append(line);
+        }
+    }
+
+    /**
+     * Remove every line
+     */
+    public void clear() {
+        lines.clear();
+        top = 0;
+        invalidateBacking();
+    }
+
+    /**
+     * @return Number of lines
+     */
+    public int lineCount() {
+        return lines.size();
+    }
+
+    /**
+     * Scrolling
+     */
+
+    /**
+     * @param line Line to show at the top (clamped to the lines there are)
+     */
+    public void scrollTo(int line) {
+        line = Math.max(0, Math.min(line, lines.size() - rows()));
+        followTail = line >= lines.size() - rows();
+        if (line != top) {
+            top = line;
+            repaint();
+        }
+    }
+
+    /**
+     * @return Line shown at the top
+     */
+    public int top() {
+        return top;
+    }
+
+    /**
+     * @param follow Whether to keep the last line in view as lines are added
+     */
+    public void setFollowTail(boolean follow) {
+        followTail = follow;
+        if (follow) {
+            scrollTo(lines.size());
+        }
+    }
+
+    /**
+     * Force the next paint to redraw every visible line (e.g. after changing
+     * rendering hints)
+     */
+    public void invalidateBacking() {
+        backingTop = -1;
+        repaint();
+    }
+
+    /**
+     * Appearance changes invalidate the backing image
+     */
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        invalidateBacking();
+        // Line height, and so the number of rows, may have changed
+        keepInView();
+    }
+
+    @Override
+    public void setForeground(Color fg) {
+        super.setForeground(fg);
+        invalidateBacking();
+    }
+
+    @Override
+    public void setBackground(Color bg) {
+        super.setBackground(bg);
+        invalidateBacking();
+    }
+
+    /**
+     * Size changes keep the view filled (and the tail in view, if following)
+     */
+
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        int rows = rows();
+        super.setBounds(x, y, width, height);
+        if (rows() != rows) {
+            keepInView();
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(Positioner.WIDTH * 4, lineHeight() * 20);
+    }
+
+    /**
+     * Painting
+     */
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        int width = getWidth();
+        int rows = rows();
+        // Whole rows, so shifted rows were never clipped at the bottom
+        int height = rows * lineHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        do {
+            validateBacking(width, height);
+
+            Graphics2D bg = (Graphics2D) backing.getGraphics();
+            try {
+                updateBacking(bg, width, rows);
+            } finally {
+                bg.dispose();
+            }
+            g.drawImage(backing, 0, 0, null);
+        } while (backing instanceof VolatileImage && ((VolatileImage) backing).contentsLost());
+
+        backingTop = top;
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * Clamp <code>top</code> again after the number of rows changed
+     */
+    private void keepInView() {
+        scrollTo(followTail ? lines.size() : top);
+    }
+
+    /**
+     * Make sure the backing image exists, fits and still has its contents;
+     * otherwise mark it for a full redraw
+     */
+    private void validateBacking(int width, int height) {
+        if (backing != null && (backing.getWidth(null) != width || backing.getHeight(null) != height)) {
+            backing = null;
+        }
+
+        if (backing instanceof VolatileImage) {
+            switch (((VolatileImage) backing).validate(getGraphicsConfiguration())) {
+            case VolatileImage.IMAGE_INCOMPATIBLE:
+                backing = null;
+                break;
+
+            case VolatileImage.IMAGE_RESTORED:
+                backingTop = -1;
+                break;
+
+            default:
+                break;
+            }
+        }
+
+        if (backing == null) {
+            // Volatile images live in video memory; headless or hidden, use a plain one
+            backing = createVolatileImage(width, height);
+            if (backing == null) {
+                backing = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            backingTop = -1;
+        }
+    }
+
+    /**
+     * Bring the backing image from <code>backingTop</code> to <code>top</code>,
+     * drawing as few lines as possible
+     */
+    private void updateBacking(Graphics2D bg, int width, int rows) {
+        int lineHeight = lineHeight();
+        int shift = top - backingTop;
+
+        if (backingTop < 0 || Math.abs(shift) >= rows) {
+            drawRows(bg, width, 0, rows);
+            return;
+        }
+
+        if (shift > 0) {
+            // Scrolled down: move everything up and draw the bottom strip
+            bg.copyArea(0, shift * lineHeight, width, (rows - shift) * lineHeight, 0, -shift * lineHeight);
+            drawRows(bg, width, rows - shift, rows);
+        } else if (shift < 0) {
+            bg.copyArea(0, 0, width, (rows + shift) * lineHeight, 0, -shift * lineHeight);
+            drawRows(bg, width, 0, -shift);
+        }
+
+        // Lines that changed in place (e.g. appended while the view is not full)
+        int from = Math.max(dirtyFrom - top, 0);
+        int to = Math.min(dirtyTo - top, rows);
+        if (from < to) {
+            drawRows(bg, width, from, to);
+        }
+    }
+
+    /**
+     * Clear and draw rows [from, to) of the view
+     */
+    private void drawRows(Graphics2D bg, int width, int from, int to) {
+        int lineHeight = lineHeight();
+        bg.setColor(getBackground());
+        bg.fillRect(0, from * lineHeight, width, (to - from) * lineHeight);
+
+        int first = top + from;
+        int last = Math.min(top + to, lines.size());
+        if (first >= last) {
+            return;
+        }
+
+        bg.setFont(getFont());
+        bg.setColor(getForeground());
+        DrawString drawer = new DrawString(bg);
+        String[] strip = lines.subList(first, last).toArray(new String[last - first]);
+        drawer.drawLines(strip, 0, from * lineHeight + bg.getFontMetrics().getAscent());
+    }
+
+    private void dirty(int from, int to) {
+        if (to <= top || from >= top + rows()) {
+            return;
+        }
+        dirtyFrom = Math.min(dirtyFrom, from);
+        dirtyTo = Math.max(dirtyTo, to);
+        repaint();
+    }
+
+    /**
+     * @return Number of rows the view shows, counting a partial bottom row
+     */
+    private int rows() {
+        int lineHeight = lineHeight();
+        return Math.max(1, (getHeight() + lineHeight - 1) / lineHeight);
+    }
+
+    private int lineHeight() {
+        return getFontMetrics(getFont()).getHeight();
+    }
+}
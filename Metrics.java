@@ -0,0 +1,130 @@
+package gui;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import gui.util.LatencyHistogram;
+
+/**
+ * Opt-in counters and latency histograms for <code>DrawString</code> and
+ * <code>Positioner</code>. Run with <code>-Dgui.metrics=true</code> to enable.
+ * <p>
+ * Whether metrics are on is decided once, in a <code>static final</code>, so
+ * when they are off the JIT removes the timing code entirely. Read the results
+ * with <code>Metrics.snapshot()</code> or through JMX (see
+ * <code>MetricsMXBean</code>)
+ */
+public final class Metrics implements MetricsMXBean {
+    /**
+     * Whether anything is recorded. Fixed at startup
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("gui.metrics");
+    /**
+     * Name the MBean is registered under
+     */
+    public static final String OBJECT_NAME = "gui:type=Metrics";
+
+    static final LatencyHistogram PARSED_LINES = new LatencyHistogram();
+    static final LatencyHistogram WIDTH = new LatencyHistogram();
+    static final LatencyHistogram CONTROLLED_DRAW = new LatencyHistogram();
+    static final LatencyHistogram POSITIONED = new LatencyHistogram();
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (InstanceAlreadyExistsException e) {
+                // Loaded by another class loader; that one reports
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The metrics as an MXBean, e.g. to register elsewhere
+     */
+    public static MetricsMXBean mxBean() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return Summary of every metric by name, in a stable order
+     */
+    public static Map<String, LatencyHistogram.Snapshot> snapshot() {
+        Map<String, LatencyHistogram.Snapshot> res = new LinkedHashMap<>();
+        res.put("parsedLines", PARSED_LINES.snapshot());
+        res.put("width", WIDTH.snapshot());
+        res.put("controlledDraw", CONTROLLED_DRAW.snapshot());
+        res.put("positioned", POSITIONED.snapshot());
+        return res;
+    }
+
+    /**
+     * Recording. Everything folds away when <code>ENABLED</code> is false
+     */
+
+    /**
+     * @return Start time to pass to <code>stop</code>
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @param histogram Where to record
+     * @param start     Result of <code>start</code>
+     */
+    static void stop(LatencyHistogram histogram, long start) {
+        if (ENABLED) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * MXBean
+     */
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getParsedLines() {
+        return PARSED_LINES.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getWidth() {
+        return WIDTH.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getControlledDraw() {
+        return CONTROLLED_DRAW.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getPositioned() {
+        return POSITIONED.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        PARSED_LINES.reset();
+        WIDTH.reset();
+        CONTROLLED_DRAW.reset();
+        POSITIONED.reset();
+    }
+}
@@ -0,0 +1,39 @@
+package gui;
+
+import gui.util.LatencyHistogram;
+
+/**
+ * JMX view of <code>Metrics</code>. Registered as <code>gui:type=Metrics</code>
+ * when metrics are enabled
+ */
+public interface MetricsMXBean {
+    /**
+     * @return Whether anything is being recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * @return Calls parsing text into lines in <code>DrawString</code>
+     */
+    LatencyHistogram.Snapshot getParsedLines();
+
+    /**
+     * @return Calls to <code>DrawString.width</code>
+     */
+    LatencyHistogram.Snapshot getWidth();
+
+    /**
+     * @return Batches of parsed lines drawn by <code>DrawString</code>
+     */
+    LatencyHistogram.Snapshot getControlledDraw();
+
+    /**
+     * @return Calls to <code>Positioner.positioned</code>
+     */
+    LatencyHistogram.Snapshot getPositioned();
+
+    /**
+     * Clear everything recorded so far
+     */
+    void reset();
+}
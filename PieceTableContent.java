@@ -0,0 +1,766 @@
+package gui;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * Document content stored as a piece table: the original text, an append-only
+ * buffer of everything inserted since, and a balanced tree (a treap) of pieces
+ * pointing into the two. Unlike <code>GapContent</code>, edits far apart never
+ * copy the text in between, and replacing all the text does not touch the
+ * original buffer.
+ * <p>
+ * Every tree node also counts the newlines below it, so offset to line and line
+ * to offset lookups are O(log n). Use through <code>PieceTableDocument</code>
+ */
+public class PieceTableContent implements AbstractDocument.Content {
+    private final char[] original;
+    /**
+     * Offsets of every '\n' in <code>original</code>
+     */
+    private final int[] originalLines;
+
+    private char[] added = new char[64];
+    private int addedLength;
+    /**
+     * Offsets of every '\n' in <code>added</code>
+     */
+    private int[] addedLines = new int[16];
+    private int addedLineCount;
+
+    private Piece root;
+    private int seed = 0x2545F491;
+
+    /**
+     * Results of <code>split</code>
+     */
+    private Piece splitLeft;
+    private Piece splitRight;
+
+    /**
+     * Positions are kept sorted by a raw value that never changes for positions
+     * away from the edit. Positions before the (virtual) gap have
+     * <code>raw == offset</code>, those after have
+     * <code>raw == offset + gapSize</code>, so an edit only rewrites the
+     * positions between it and the previous edit, like <code>GapContent</code>
+     */
+    private MarkData[] marks = new MarkData[16];
+    private int markCount;
+    private long gapStart;
+    private long gapSize = 1L << 40;
+    private final ReferenceQueue<StickyPosition> unusedMarks = new ReferenceQueue<>();
+
+    /**
+     * Empty content (just the implied trailing newline)
+     */
+    public PieceTableContent() {
+        this("");
+    }
+
+    /**
+     * @param text Initial text. It becomes the original buffer and is never copied
+     *             again
+     */
+    public PieceTableContent(CharSequence text) {
+        int n = text.length();
+        original = new char[n + 1];
+        text.toString().getChars(0, n, original, 0);
+        original[n] = '\n';
+
+        int count = 0;
+        int[] lines = new int[16];
+        for (int i = 0; i <= n; i++) {
+            if (original[i] == '\n') {
+                if (count == lines.length) {
+                    lines = Arrays.copyOf(lines, count * 2);
+                }
+                lines[count++] = i;
+            }
+        }
+        originalLines = Arrays.copyOf(lines, count);
+
+        root = new Piece(false, 0, n + 1, count, nextPriority());
+    }
+
+    /**
+     * Content
+     */
+
+    @Override
+    public int length() {
+        return size(root);
+    }
+
+    @Override
+    public Position createPosition(int offset) throws BadLocationException {
+        if (offset < 0 || offset > length()) {
+            throw new BadLocationException("Invalid position", offset);
+        }
+        purgeMarks();
+
+        long raw = offset < gapStart ? offset : offset + gapSize;
+        int index = firstMarkAtLeast(raw);
+        if (markCount == marks.length) {
+            marks = Arrays.copyOf(marks, markCount * 2);
+        }
+        System.arraycopy(marks, index, marks, index + 1, markCount - index);
+
+        StickyPosition res = new StickyPosition();
+        res.mark = marks[index] = new MarkData(res, raw, unusedMarks);
+        markCount++;
+        return res;
+    }
+
+    @Override
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        if (where < 0 || where > length()) {
+            throw new BadLocationException("Invalid insert", length());
+        }
+        int n = str.length();
+        if (n == 0) {
+            return null;
+        }
+
+        // Append to the add buffer
+        int start = addedLength;
+        if (start + n > added.length) {
+            added = Arrays.copyOf(added, Math.max(added.length * 2, start + n));
+        }
+        str.getChars(0, n, added, start);
+        addedLength += n;
+        int lines = 0;
+        for (int i = 0; i < n; i++) {
+            if (str.charAt(i) == '\n') {
+                if (addedLineCount == addedLines.length) {
+                    addedLines = Arrays.copyOf(addedLines, addedLineCount * 2);
+                }
+                addedLines[addedLineCount++] = start + i;
+                lines++;
+            }
+        }
+
+        split(root, where);
+        Piece left = splitLeft;
+        Piece right = splitRight;
+
+        Piece last = left;
+        while (last != null && last.right != null) {
+            last = last.right;
+        }
+        if (last != null && last.added && last.start + last.length == start) {
+            // Typing: grow the piece just before the cursor instead of adding one
+            for (Piece p = left; p != null; p = p.right) {
+                p.size += n;
+                p.lines += lines;
+            }
+            last.length += n;
+            last.lineCount += lines;
+            root = merge(left, right);
+        } else {
+            root = merge(merge(left, new Piece(true, start, n, lines, nextPriority())), right);
+        }
+
+        updateMarksForInsert(where, n);
+        return new InsertUndo(where, n);
+    }
+
+    @Override
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        if (where < 0 || nitems < 0 || where + nitems >= length()) {
+            throw new BadLocationException("Invalid remove", length() + 1);
+        }
+        if (nitems == 0) {
+            return null;
+        }
+
+        SavedMarks saved = saveMarks(where, nitems);
+        Piece removed = cut(where, nitems);
+        updateMarksForRemove(where, nitems);
+        return new RemoveUndo(where, nitems, removed, saved);
+    }
+
+    @Override
+    public String getString(int where, int len) throws BadLocationException {
+        Segment s = new Segment();
+        getChars(where, len, s);
+        return new String(s.array, s.offset, s.count);
+    }
+
+    @Override
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        if (where < 0 || len < 0 || where + len > length()) {
+            throw new BadLocationException("Invalid location", length() + 1);
+        }
+
+        // Find the piece holding where
+        Piece p = root;
+        int offset = where;
+        while (p != null) {
+            int leftSize = size(p.left);
+            if (offset < leftSize) {
+                p = p.left;
+            } else if (offset >= leftSize + p.length && p.right != null) {
+                offset -= leftSize + p.length;
+                p = p.right;
+            } else {
+                offset -= leftSize;
+                break;
+            }
+        }
+
+        if (p == null || offset + len <= p.length || txt.isPartialReturn()) {
+            // Point straight into the buffer (the text there never changes)
+            txt.array = p == null ? original : buffer(p);
+            txt.offset = p == null ? 0 : p.start + offset;
+            txt.count = p == null ? 0 : Math.min(len, p.length - offset);
+            return;
+        }
+
+        char[] res = new char[len];
+        copy(root, where, where + len, res, 0);
+        txt.array = res;
+        txt.offset = 0;
+        txt.count = len;
+    }
+
+    /**
+     * Lines
+     */
+
+    /**
+     * @return Number of lines (there is always a trailing newline)
+     */
+    public int lineCount() {
+        return lines(root);
+    }
+
+    /**
+     * @param offset Offset in the content
+     * @return Line containing offset
+     */
+    public int lineOf(int offset) {
+        if (offset < 0 || offset > length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " of " + length());
+        }
+
+        int res = 0;
+        Piece p = root;
+        while (p != null) {
+            int leftSize = size(p.left);
+            if (offset < leftSize) {
+                p = p.left;
+            } else if (offset < leftSize + p.length) {
+                int[] lines = p.added ? addedLines : originalLines;
+                int count = p.added ? addedLineCount : lines.length;
+                int first = lowerBound(lines, count, p.start);
+                return res + lines(p.left) + lowerBound(lines, count, p.start + offset - leftSize) - first;
+            } else {
+                res += lines(p.left) + p.lineCount;
+                offset -= leftSize + p.length;
+                p = p.right;
+            }
+        }
+        // Past the trailing newline
+        return res - 1;
+    }
+
+    /**
+     * @param line Line number
+     * @return Offset of the first character of the line
+     */
+    public int lineStart(int line) {
+        if (line < 0 || line >= lineCount()) {
+            throw new IndexOutOfBoundsException("Line " + line + " of " + lineCount());
+        }
+        if (line == 0) {
+            return 0;
+        }
+
+        // Find the line-th newline and start just past it
+        int offset = 0;
+        Piece p = root;
+        while (true) {
+            int leftLines = lines(p.left);
+            if (line <= leftLines) {
+                p = p.left;
+            } else if (line <= leftLines + p.lineCount) {
+                int[] lines = p.added ? addedLines : originalLines;
+                int count = p.added ? addedLineCount : lines.length;
+                int newline = lines[lowerBound(lines, count, p.start) + line - leftLines - 1];
+                return offset + size(p.left) + newline - p.start + 1;
+            } else {
+                line -= leftLines + p.lineCount;
+                offset += size(p.left) + p.length;
+                p = p.right;
+            }
+        }
+    }
+
+    /**
+     * @return Number of pieces in the table
+     */
+    public int pieceCount() {
+        return count(root);
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * Splits a tree so the first k characters are in <code>splitLeft</code> and
+     * the rest in <code>splitRight</code>, cutting a piece in two if needed
+     */
+    private void split(Piece t, int k) {
+        if (t == null) {
+            splitLeft = splitRight = null;
+            return;
+        }
+
+        int leftSize = size(t.left);
+        if (k <= leftSize) {
+            split(t.left, k);
+            t.left = splitRight;
+            t.update();
+            splitRight = t;
+            return;
+        }
+
+        int end = leftSize + t.length;
+        if (k >= end) {
+            split(t.right, k - end);
+            t.right = splitLeft;
+            t.update();
+            splitLeft = t;
+            return;
+        }
+
+        // Cut inside this piece. The tail keeps the priority so it can take t's place
+        int cut = k - leftSize;
+        int tailLines = countLines(t.added, t.start + cut, t.start + t.length);
+        Piece tail = new Piece(t.added, t.start + cut, t.length - cut, tailLines, t.priority);
+        t.length = cut;
+        t.lineCount -= tailLines;
+
+        tail.right = t.right;
+        t.right = null;
+        t.update();
+        tail.update();
+
+        splitLeft = t;
+        splitRight = tail;
+    }
+
+    /**
+     * @return Pieces holding [where, where + length), taken out of the tree.
+     *         They still point into the buffers, so they can be put back with
+     *         <code>paste</code> without copying any text
+     */
+    private Piece cut(int where, int length) {
+        split(root, where);
+        Piece left = splitLeft;
+        split(splitRight, length);
+        Piece res = splitLeft;
+        root = merge(left, splitRight);
+        return res;
+    }
+
+    /**
+     * Put pieces from <code>cut</code> back in the tree at where
+     */
+    private void paste(int where, Piece pieces) {
+        split(root, where);
+        root = merge(merge(splitLeft, pieces), splitRight);
+    }
+
+    private static Piece merge(Piece a, Piece b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.update();
+        return b;
+    }
+
+    /**
+     * Copies the characters in [from, to) of the subtree t into dst
+     */
+    private void copy(Piece t, int from, int to, char[] dst, int dstOffset) {
+        while (t != null && from < to) {
+            int leftSize = size(t.left);
+            if (from < leftSize) {
+                copy(t.left, from, Math.min(to, leftSize), dst, dstOffset);
+                dstOffset += Math.min(to, leftSize) - from;
+                from = leftSize;
+            }
+
+            int end = leftSize + t.length;
+            if (from < end && from < to) {
+                int n = Math.min(to, end) - from;
+                System.arraycopy(buffer(t), t.start + from - leftSize, dst, dstOffset, n);
+                dstOffset += n;
+                from += n;
+            }
+
+            // Continue in the right subtree
+            from -= end;
+            to -= end;
+            t = t.right;
+        }
+    }
+
+    private char[] buffer(Piece p) {
+        return p.added ? added : original;
+    }
+
+    /**
+     * @return Number of '\n' in [from, to) of a buffer
+     */
+    private int countLines(boolean inAdded, int from, int to) {
+        int[] lines = inAdded ? addedLines : originalLines;
+        int count = inAdded ? addedLineCount : lines.length;
+        return lowerBound(lines, count, to) - lowerBound(lines, count, from);
+    }
+
+    /**
+     * @return Index of the first of the first count values that is &gt;= key
+     */
+    private static int lowerBound(int[] values, int count, int key) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int nextPriority() {
+        // xorshift: deterministic, so layouts of the tree are reproducible
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private static int size(Piece p) {
+        return p == null ? 0 : p.size;
+    }
+
+    private static int lines(Piece p) {
+        return p == null ? 0 : p.lines;
+    }
+
+    private static int count(Piece p) {
+        return p == null ? 0 : 1 + count(p.left) + count(p.right);
+    }
+
+    /**
+     * Positions
+     */
+
+    private long offsetOf(long raw) {
+        return raw < gapStart ? raw : raw - gapSize;
+    }
+
+    private int firstMarkAtLeast(long raw) {
+        int lo = 0;
+        int hi = markCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (marks[mid].raw < raw) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Moves the gap so every position at or after offset is after it
+     */
+    private void moveGap(long offset) {
+        if (offset < gapStart) {
+            // Positions in [offset, gapStart) move after the gap
+            for (int i = firstMarkAtLeast(offset); i < markCount && marks[i].raw < gapStart; i++) {
+                marks[i].raw += gapSize;
+            }
+        } else if (offset > gapStart) {
+            // Positions in [gapStart, offset) move before it
+            for (int i = firstMarkAtLeast(gapStart + gapSize); i < markCount && marks[i].raw < offset + gapSize; i++) {
+                marks[i].raw -= gapSize;
+            }
+        }
+        gapStart = offset;
+    }
+
+    /**
+     * @return Positions in [offset, offset + length] with their current offsets,
+     *         so an undo can put them back
+     */
+    private SavedMarks saveMarks(int offset, int length) {
+        long from = offset < gapStart ? offset : offset + gapSize;
+        long to = offset + length < gapStart ? offset + length : offset + length + gapSize;
+        int first = firstMarkAtLeast(from);
+        int last = firstMarkAtLeast(to + 1);
+
+        SavedMarks res = new SavedMarks(last - first);
+        for (int i = first; i < last; i++) {
+            res.marks[i - first] = marks[i];
+            res.offsets[i - first] = (int) offsetOf(marks[i].raw);
+        }
+        return res;
+    }
+
+    /**
+     * Puts positions back where they were when saved. The text they were in must
+     * be back at offset
+     */
+    private void restoreMarks(SavedMarks saved, int offset, int length) {
+        for (int i = 0; i < saved.marks.length; i++) {
+            long real = saved.offsets[i];
+            saved.marks[i].raw = real < gapStart ? real : real + gapSize;
+        }
+
+        // Only positions in [offset, offset + length] moved; sort just those
+        long from = offset < gapStart ? offset : offset + gapSize;
+        long to = offset + length < gapStart ? offset + length : offset + length + gapSize;
+        // Everything in the range still compares the same against its ends
+        int first = firstMarkAtLeast(from);
+        int last = firstMarkAtLeast(to + 1);
+        Arrays.sort(marks, first, last, (a, b) -> Long.compare(a.raw, b.raw));
+    }
+
+    private void updateMarksForInsert(int where, int length) {
+        // Position 0 never moves
+        moveGap(Math.max(1, where));
+        if (gapSize <= length) {
+            resetGap();
+        }
+        gapStart += length;
+        gapSize -= length;
+    }
+
+    private void updateMarksForRemove(int where, int length) {
+        moveGap(where);
+
+        // Positions inside the removed text collapse onto where
+        long collapsed = where + gapSize + length;
+        for (int i = firstMarkAtLeast(where + gapSize); i < markCount && marks[i].raw < collapsed; i++) {
+            marks[i].raw = collapsed;
+        }
+        gapSize += length;
+    }
+
+    /**
+     * Rewrites every position so the gap is large again. Only needed after
+     * inserting ~1T characters
+     */
+    private void resetGap() {
+        for (int i = 0; i < markCount; i++) {
+            MarkData mark = marks[i];
+            if (mark.raw >= gapStart) {
+                mark.raw = mark.raw - gapSize + (1L << 40);
+            }
+        }
+        gapSize = 1L << 40;
+    }
+
+    /**
+     * Drops positions nobody references anymore
+     */
+    private void purgeMarks() {
+        if (unusedMarks.poll() == null) {
+            return;
+        }
+        while (unusedMarks.poll() != null) {
+            // Drain; the sweep below catches them all
+        }
+
+        int n = 0;
+        for (int i = 0; i < markCount; i++) {
+            if (marks[i].get() != null) {
+                marks[n++] = marks[i];
+            }
+        }
+        Arrays.fill(marks, n, markCount, null);
+        markCount = n;
+    }
+
+    /**
+     * Node of the piece tree: a run of one buffer plus totals for its subtree
+     */
+    private static final class Piece {
+        final boolean added;
+        final int start;
+        int length;
+        int lineCount;
+        final int priority;
+
+        Piece left;
+        Piece right;
+        /**
+         * Characters and newlines in this subtree
+         */
+        int size;
+        int lines;
+
+        Piece(boolean added, int start, int length, int lineCount, int priority) {
+            this.added = added;
+            this.start = start;
+            this.length = length;
+            this.lineCount = lineCount;
+            this.priority = priority;
+            this.size = length;
+            this.lines = lineCount;
+        }
+
+        void update() {
+            size = length + PieceTableContent.size(left) + PieceTableContent.size(right);
+            lines = lineCount + PieceTableContent.lines(left) + PieceTableContent.lines(right);
+        }
+    }
+
+    private static final class MarkData extends WeakReference<StickyPosition> {
+        long raw;
+
+        MarkData(StickyPosition position, long raw, ReferenceQueue<StickyPosition> queue) {
+            super(position, queue);
+            this.raw = raw;
+        }
+    }
+
+    private final class StickyPosition implements Position {
+        MarkData mark;
+
+        @Override
+        public int getOffset() {
+            return (int) offsetOf(mark.raw);
+        }
+
+        @Override
+        public String toString() {
+            return Integer.toString(getOffset());
+        }
+    }
+
+    /**
+     * Undo
+     */
+
+    private static final class SavedMarks {
+        final MarkData[] marks;
+        final int[] offsets;
+
+        SavedMarks(int n) {
+            marks = new MarkData[n];
+            offsets = new int[n];
+        }
+    }
+
+    /**
+     * Undoing and redoing moves the pieces of the edited text out of and back
+     * into the tree, so the text itself is never copied
+     */
+    private final class InsertUndo extends AbstractUndoableEdit {
+        private static final long serialVersionUID = 1L;
+
+        private final int offset;
+        private final int length;
+        private Piece pieces;
+        private SavedMarks saved;
+
+        InsertUndo(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            if (offset + length >= length()) {
+                throw new CannotUndoException();
+            }
+            saved = saveMarks(offset, length);
+            pieces = cut(offset, length);
+            updateMarksForRemove(offset, length);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            if (offset > length()) {
+                throw new CannotRedoException();
+            }
+            paste(offset, pieces);
+            pieces = null;
+            updateMarksForInsert(offset, length);
+            restoreMarks(saved, offset, length);
+            saved = null;
+        }
+    }
+
+    private final class RemoveUndo extends AbstractUndoableEdit {
+        private static final long serialVersionUID = 1L;
+
+        private final int offset;
+        private final int length;
+        private Piece pieces;
+        private SavedMarks saved;
+
+        RemoveUndo(int offset, int length, Piece pieces, SavedMarks saved) {
+            this.offset = offset;
+            this.length = length;
+            this.pieces = pieces;
+            this.saved = saved;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            if (offset > length()) {
+                throw new CannotUndoException();
+            }
+            paste(offset, pieces);
+            pieces = null;
+            updateMarksForInsert(offset, length);
+            restoreMarks(saved, offset, length);
+            saved = null;
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            if (offset + length >= length()) {
+                throw new CannotRedoException();
+            }
+            saved = saveMarks(offset, length);
+            pieces = cut(offset, length);
+            updateMarksForRemove(offset, length);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package gui;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+
+/**
+ * <code>PlainDocument</code> backed by a <code>PieceTableContent</code>, for
+ * editing very large texts. Initial text is loaded without being copied into
+ * the edit buffer, and line lookups are O(log n). For example
+ *
+ * <pre>
+ * JTextArea area = new JTextArea(new PieceTableDocument(hugeLog));
+ * </pre>
+ *
+ * or use <code>Components.scrollPane(text, bounds, parent, true)</code>
+ */
+public class PieceTableDocument extends PlainDocument {
+    private static final long serialVersionUID = 1L;
+
+    private final PieceTableContent content;
+
+    /**
+     * Empty document
+     */
+    public PieceTableDocument() {
+        this(new PieceTableContent());
+    }
+
+    /**
+     * @param text Initial text
+     */
+    public PieceTableDocument(String text) {
+        this(new PieceTableContent(text));
+    }
+
+    private PieceTableDocument(PieceTableContent content) {
+        super(content);
+        this.content = content;
+
+        if (content.length() > 1) {
+            // PlainDocument starts with one empty line; map out the initial text
+            writeLock();
+            try {
+                AbstractDocument.BranchElement root = (AbstractDocument.BranchElement) getDefaultRootElement();
+                Element[] lines = new Element[content.lineCount()];
+                int start = 0;
+                for (int i = 0; i < lines.length; i++) {
+                    int end = i + 1 < lines.length ? content.lineStart(i + 1) : content.length();
+                    lines[i] = createLeafElement(root, null, start, end);
+                    start = end;
+                }
+                root.replace(0, root.getElementCount(), lines);
+            } finally {
+                writeUnlock();
+            }
+        }
+    }
+
+    /**
+     * @param offset Offset in the document
+     * @return Line containing offset, in O(log n)
+     */
+    public int lineOfOffset(int offset) {
+        readLock();
+        try {
+            return content.lineOf(offset);
+        } finally {
+            readUnlock();
+        }
+    }
+
+    /**
+     * @param line Line number
+     * @return Offset of the first character of line, in O(log n)
+     */
+    public int lineStartOffset(int line) {
+        readLock();
+        try {
+            return content.lineStart(line);
+        } finally {
+            readUnlock();
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package gui;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Insets;
+import java.awt.LayoutManager2;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Objects;
+
+import javax.swing.JComponent;
+
+import gui.util.Corner;
+import gui.util.Direction;
+import gui.util.Justify;
+import gui.util.Positional;
+
+/**
+ * Layout manager that places components the way <code>Positioner</code> does:
+ * in a corner or the center of the container, or beside a sibling. Swing's
+ * normal validation then keeps everything in place as the container resizes or
+ * components change size, with no <code>setBounds</code> calls. For example
+ *
+ * <pre>
+ * JPanel panel = new JPanel(new PositionLayout());
+ * JLabel name = new JLabel("Name");
+ * panel.add(name, PositionLayout.corner(Corner.TOP_LEFT));
+ * panel.add(nameField, PositionLayout.beside(name, Direction.RIGHT).size(Positioner.WIDTH, Positioner.HEIGHT));
+ * panel.add(ok, PositionLayout.beside(nameField, new Positional(Direction.DOWN, Justify.END)));
+ * </pre>
+ *
+ * Components get their preferred size unless the constraint gives one.
+ * Preferred and minimum sizes are cached until the container is invalidated,
+ * and <code>layoutContainer</code> does not allocate once the set of
+ * components is unchanged. Adding a component without a constraint puts it in
+ * the top left corner
+ */
+public class PositionLayout implements LayoutManager2 {
+    private final HashMap<Component, Constraint> constraints = new HashMap<>();
+    /**
+     * Components in the order they were added
+     */
+    private final ArrayList<Component> added = new ArrayList<>();
+
+    /**
+     * Computed from the above when components change: references before
+     * dependents
+     */
+    private Component[] order;
+    private Constraint[] orderConstraints;
+    /**
+     * Index in order of each component's sibling, or -1 for the container
+     */
+    private int[] refs;
+    /**
+     * Index in order of the component each one is (indirectly) placed against
+     * the container through
+     */
+    private int[] roots;
+    private Rectangle[] bounds;
+
+    /**
+     * Cached sizes, by index in order
+     */
+    private Dimension[] preferred;
+    private Dimension[] minimum;
+    private boolean sizesValid;
+
+    private final Rectangle area = new Rectangle();
+    private final Insets insets = new Insets(0, 0, 0, 0);
+
+    /**
+     * Constraints
+     */
+
+    /**
+     * @param corner Corner of the container
+     * @return Constraint for the corner, <code>Positioner.SPACER</code> from the
+     *         edges
+     */
+    public static Constraint corner(Corner corner) {
+        return corner(corner, Positioner.SPACER);
+    }
+
+    /**
+     * @param corner Corner of the container
+     * @param spacer Space from the edges
+     * @return Constraint for the corner
+     */
+    public static Constraint corner(Corner corner, int spacer) {
+        return new Constraint(null, null, Objects.requireNonNull(corner), spacer, -1, -1);
+    }
+
+    /**
+     * @return Constraint for the center of the container
+     */
+    public static Constraint center() {
+        return new Constraint(null, null, null, 0, -1, -1);
+    }
+
+    /**
+     * @param sibling Component in the same container to position against
+     * @param p       Side and alignment
+     * @return Constraint beside sibling, <code>Positioner.SPACER</code> away
+     */
+    public static Constraint beside(Component sibling, Positional p) {
+        return beside(sibling, p, Positioner.SPACER);
+    }
+
+    /**
+     * @param sibling Component in the same container to position against
+     * @param p       Side and alignment
+     * @param spacer  Space between them
+     * @return Constraint beside sibling
+     */
+    public static Constraint beside(Component sibling, Positional p, int spacer) {
+        return new Constraint(Objects.requireNonNull(sibling), Objects.requireNonNull(p), null, spacer, -1, -1);
+    }
+
+    /**
+     * @param sibling Component in the same container to position against
+     * @param dir     Side, aligned with the start of sibling
+     * @return Constraint beside sibling, <code>Positioner.SPACER</code> away
+     */
+    public static Constraint beside(Component sibling, Direction dir) {
+        return beside(sibling, new Positional(dir, Justify.START));
+    }
+
+    /**
+     * LayoutManager2
+     */
+
+    @Override
+    public void addLayoutComponent(Component comp, Object constraint) {
+        if (constraint != null && !(constraint instanceof Constraint)) {
+            throw new IllegalArgumentException("Expected a PositionLayout.Constraint, got " + constraint);
+        }
+        if (constraints.put(comp, constraint == null ? corner(Corner.TOP_LEFT) : (Constraint) constraint) == null) {
+            added.add(comp);
+        }
+        order = null;
+    }
+
+    @Override
+    public void addLayoutComponent(String name, Component comp) {
+        addLayoutComponent(comp, null);
+    }
+
+    @Override
+    public void removeLayoutComponent(Component comp) {
+        if (constraints.remove(comp) != null) {
+            added.remove(comp);
+            order = null;
+        }
+    }
+
+    @Override
+    public void invalidateLayout(Container target) {
+        sizesValid = false;
+    }
+
+    @Override
+    public Dimension preferredLayoutSize(Container parent) {
+        return layoutSize(parent, false);
+    }
+
+    @Override
+    public Dimension minimumLayoutSize(Container parent) {
+        return layoutSize(parent, true);
+    }
+
+    @Override
+    public Dimension maximumLayoutSize(Container target) {
+        return new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public float getLayoutAlignmentX(Container target) {
+        return 0.5f;
+    }
+
+    @Override
+    public float getLayoutAlignmentY(Container target) {
+        return 0.5f;
+    }
+
+    @Override
+    public void layoutContainer(Container parent) {
+        synchronized (parent.getTreeLock()) {
+            prepare();
+            Insets insets = insetsOf(parent);
+            area.setBounds(insets.left, insets.top,
+                    parent.getWidth() - insets.left - insets.right,
+                    parent.getHeight() - insets.top - insets.bottom);
+
+            place(preferred);
+            for (int i = 0; i < order.length; i++) {
+                Rectangle b = bounds[i];
+                order[i].setBounds(b.x, b.y, b.width, b.height);
+            }
+        }
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * Size that fits each corner or center group (a component placed against
+     * the container and everything placed against it) on its own
+     */
+    private Dimension layoutSize(Container parent, boolean useMinimum) {
+        synchronized (parent.getTreeLock()) {
+            prepare();
+            area.setBounds(0, 0, 0, 0);
+            place(useMinimum ? minimum : preferred);
+
+            // Bounding box of each group, kept at its root
+            int n = order.length;
+            int[] box = new int[4 * n];
+            for (int i = 0; i < n; i++) {
+                int r = 4 * roots[i];
+                Rectangle b = bounds[i];
+                boolean first = roots[i] == i;
+                box[r] = first ? b.x : Math.min(box[r], b.x);
+                box[r + 1] = first ? b.y : Math.min(box[r + 1], b.y);
+                box[r + 2] = first ? b.x + b.width : Math.max(box[r + 2], b.x + b.width);
+                box[r + 3] = first ? b.y + b.height : Math.max(box[r + 3], b.y + b.height);
+            }
+
+            int width = 0;
+            int height = 0;
+            for (int root = 0; root < n; root++) {
+                if (roots[root] != root) {
+                    continue;
+                }
+                // Corners keep their spacing from both edges
+                int margin = orderConstraints[root].corner != null ? 2 * orderConstraints[root].spacer : 0;
+                width = Math.max(width, box[4 * root + 2] - box[4 * root] + margin);
+                height = Math.max(height, box[4 * root + 3] - box[4 * root + 1] + margin);
+            }
+
+            Insets insets = insetsOf(parent);
+            return new Dimension(width + insets.left + insets.right, height + insets.top + insets.bottom);
+        }
+    }
+
+    /**
+     * @return Insets of parent, without allocating for Swing containers
+     */
+    private Insets insetsOf(Container parent) {
+        return parent instanceof JComponent ? ((JComponent) parent).getInsets(insets) : parent.getInsets();
+    }
+
+    /**
+     * Position every component in <code>bounds</code>, in <code>area</code>
+     */
+    private void place(Dimension[] sizes) {
+        for (int i = 0; i < order.length; i++) {
+            Constraint c = orderConstraints[i];
+            Rectangle dest = bounds[i];
+            int width = sizes[i].width;
+            int height = sizes[i].height;
+
+            if (refs[i] >= 0) {
+                Positioner.positioned(c.positional, bounds[refs[i]], width, height, c.spacer, dest);
+            } else if (c.corner != null) {
+                Positioner.corner(area, width, height, c.corner, c.spacer, c.spacer, dest);
+            } else {
+                Positioner.center(area, width, height, dest);
+            }
+        }
+    }
+
+    /**
+     * Bring the order and cached sizes up to date
+     */
+    private void prepare() {
+        if (order == null) {
+            sort();
+            sizesValid = false;
+        }
+        if (sizesValid) {
+            return;
+        }
+
+        for (int i = 0; i < order.length; i++) {
+            Constraint c = orderConstraints[i];
+            Dimension pref = order[i].getPreferredSize();
+            Dimension min = order[i].getMinimumSize();
+            preferred[i].setSize(c.width >= 0 ? c.width : pref.width, c.height >= 0 ? c.height : pref.height);
+            minimum[i].setSize(c.width >= 0 ? c.width : min.width, c.height >= 0 ? c.height : min.height);
+        }
+        sizesValid = true;
+    }
+
+    /**
+     * Order components so each comes after its sibling
+     */
+    private void sort() {
+        int n = added.size();
+        order = new Component[n];
+        orderConstraints = new Constraint[n];
+        refs = new int[n];
+        roots = new int[n];
+        bounds = new Rectangle[n];
+        preferred = new Dimension[n];
+        minimum = new Dimension[n];
+
+        HashMap<Component, Integer> index = new HashMap<>();
+        // 0 = not visited, 1 = in progress, 2 = done
+        HashMap<Component, Integer> state = new HashMap<>();
+        for (Component comp : added) {
+            visit(comp, index, state);
+        }
+
+        for (int i = 0; i < n; i++) {
+            Constraint c = orderConstraints[i];
+            refs[i] = c.sibling == null ? -1 : index.get(c.sibling);
+            // Siblings come first, so theirs is already set
+            roots[i] = refs[i] < 0 ? i : roots[refs[i]];
+            bounds[i] = new Rectangle();
+            preferred[i] = new Dimension();
+            minimum[i] = new Dimension();
+        }
+    }
+
+    private void visit(Component comp, HashMap<Component, Integer> index, HashMap<Component, Integer> state) {
+        int s = state.getOrDefault(comp, 0);
+        if (s == 2) {
+            return;
+        }
+        if (s == 1) {
+            order = null;
+            throw new IllegalStateException("Components are positioned against each other in a cycle: " + comp);
+        }
+
+        Constraint c = constraints.get(comp);
+        state.put(comp, 1);
+        if (c.sibling != null) {
+            if (!constraints.containsKey(c.sibling)) {
+                order = null;
+                throw new IllegalStateException("Sibling is not in the same container: " + c.sibling);
+            }
+            visit(c.sibling, index, state);
+        }
+        state.put(comp, 2);
+
+        int i = index.size();
+        index.put(comp, i);
+        order[i] = comp;
+        orderConstraints[i] = c;
+    }
+
+    /**
+     * Where a component goes. Made with <code>PositionLayout.corner</code>,
+     * <code>center</code> or <code>beside</code>
+     */
+    public static final class Constraint {
+        private final Component sibling;
+        private final Positional positional;
+        private final Corner corner;
+        private final int spacer;
+        private final int width;
+        private final int height;
+
+        private Constraint(Component sibling, Positional positional, Corner corner, int spacer, int width, int height) {
+            this.sibling = sibling;
+            this.positional = positional;
+            this.corner = corner;
+            this.spacer = spacer;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * @param width  Fixed width
+         * @param height Fixed height
+         * @return Same constraint with a fixed size instead of the preferred size
+         */
+        public Constraint size(int width, int height) {
+            return new Constraint(sibling, positional, corner, spacer, width, height);
+        }
+
+        @Override
+        public String toString() {
+            String where = sibling != null
+                ? positional.direction + "/" + positional.justification + " of " + sibling.getName()
+                : corner != null ? corner.toString() : "CENTER";
+            return where + (width >= 0 ? " " + width + "x" + height : "");
+        }
+    }
+}
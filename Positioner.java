@@ -3,6 +3,7 @@ package gui;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Rectangle;
+import java.util.Arrays;
 
 import gui.util.Corner;
 import gui.util.Direction;
@@ -47,12 +48,29 @@ public class Positioner {
      * @return rectangle as specified above
      */
     public static Rectangle positioned(Positional p, Rectangle ref, Dimension dim, int spacer) {
+        return positioned(p, ref, dim.width, dim.height, spacer, new Rectangle());
+    }
+
+    /**
+     * Like <code>positioned(Positional, Rectangle, Dimension, int)</code>, but
+     * writes into an existing rectangle instead of allocating one
+     * 
+     * @param p      Specification for side and alignment
+     * @param ref    Reference to position against
+     * @param width  Width of the new rectangle
+     * @param height Height of the new rectangle
+     * @param spacer Space between ref and new rectangle
+     * @param dest   Rectangle to set (may be ref)
+     * @return dest
+     */
+    public static Rectangle positioned(Positional p, Rectangle ref, int width, int height, int spacer, Rectangle dest) {
+        long start = Metrics.start();
         int x = 0;
         int y = 0;
         switch (p.direction) {
         case UP:
             // Place above ref
-            y = ref.y - dim.height - spacer;
+            y = ref.y - height - spacer;
             switch (p.justification) {
             case START:
                 // Left aligned
@@ -61,12 +79,12 @@ public class Positioner {
 
             case CENTER:
                 // Centered
-                x = ref.x + ref.width/2 - dim.width/2;
+                x = ref.x + ref.width/2 - width/2;
                 break;
             
             case END:
                 // Right aligned
-                x = ref.x + ref.width - dim.width;
+                x = ref.x + ref.width - width;
                 break;
             }
             break;
@@ -79,11 +97,11 @@ public class Positioner {
                 break;
 
             case CENTER:
-                x = ref.x + ref.width / 2 - dim.width / 2;
+                x = ref.x + ref.width / 2 - width / 2;
                 break;
 
             case END:
-                x = ref.x + ref.width - dim.width;
+                x = ref.x + ref.width - width;
                 break;
             }
             y = ref.y + ref.height + spacer;
@@ -91,7 +109,7 @@ public class Positioner {
         
         case LEFT:
             // Place left of ref
-            x = ref.x - dim.width - spacer;
+            x = ref.x - width - spacer;
             switch (p.justification) {
             case START:
                 // top aligned
@@ -100,12 +118,12 @@ public class Positioner {
 
             case CENTER:
                 // centered
-                y = ref.y + ref.height / 2 - dim.height / 2;
+                y = ref.y + ref.height / 2 - height / 2;
                 break;
 
             case END:
                 // bottom aligned
-                y = ref.y + ref.height - dim.height;
+                y = ref.y + ref.height - height;
                 break;
             }
             break;
@@ -119,16 +137,18 @@ public class Positioner {
                 break;
 
             case CENTER:
-                y = ref.y + ref.height / 2 - dim.height / 2;
+                y = ref.y + ref.height / 2 - height / 2;
                 break;
 
             case END:
-                y = ref.y + ref.height - dim.height;
+                y = ref.y + ref.height - height;
                 break;
             }
             break;
         }
-        return new Rectangle(x, y,dim.width, dim.height);
+        Metrics.stop(Metrics.POSITIONED, start);
+        dest.setBounds(x, y, width, height);
+        return dest;
     }
     
     /**
@@ -336,11 +356,23 @@ public class Positioner {
      * @return Rectangle as specified positioned in the center of ref
      */
     public static Rectangle center(Rectangle ref, Dimension dim) {
-        return new Rectangle(
-            ref.x + ref.width / 2 - dim.width / 2,
-            ref.y + ref.height / 2 - dim.height / 2,
-            dim.width, dim.height
+        return center(ref, dim.width, dim.height, new Rectangle());
+    }
+
+    /**
+     * @param ref    Relative rectangle
+     * @param width  Width of new rectangle
+     * @param height Height of new rectangle
+     * @param dest   Rectangle to set (may be ref)
+     * @return dest, positioned in the center of ref
+     */
+    public static Rectangle center(Rectangle ref, int width, int height, Rectangle dest) {
+        dest.setBounds(
+            ref.x + ref.width / 2 - width / 2,
+            ref.y + ref.height / 2 - height / 2,
+            width, height
         );
+        return dest;
     }
 
     /**
@@ -373,26 +405,44 @@ public class Positioner {
      *         corner, spacerX, and spacerY
      */
     public static Rectangle corner(Rectangle ref, Dimension dim, Corner corner, int spacerX, int spacerY) {
+        return corner(ref, dim.width, dim.height, corner, spacerX, spacerY, new Rectangle());
+    }
+
+    /**
+     * Like <code>corner(Rectangle, Dimension, Corner, int, int)</code>, but writes
+     * into an existing rectangle instead of allocating one
+     * 
+     * @param ref     reference rectangle
+     * @param width   width of the rectangle
+     * @param height  height of the rectangle
+     * @param corner  corner of ref
+     * @param spacerX space from edge of ref in x direction
+     * @param spacerY space from edge of ref in y direction
+     * @param dest    rectangle to set (may be ref)
+     * @return dest
+     */
+    public static Rectangle corner(Rectangle ref, int width, int height, Corner corner, int spacerX, int spacerY, Rectangle dest) {
         // Already covering top left
         int x = ref.x + spacerX;
         int y = ref.y + spacerY;
 
         switch (corner) {
             case TOP_RIGHT:
-                x = ref.x + ref.width - dim.width - spacerX;
+                x = ref.x + ref.width - width - spacerX;
                 break;
             case BOTTOM_LEFT:
-                y = ref.y + ref.height - dim.height - spacerY;
+                y = ref.y + ref.height - height - spacerY;
                 break;
             case BOTTOM_RIGHT:
-                x = ref.x + ref.width - dim.width - spacerX;
-                y = ref.y + ref.height - dim.height - spacerY;
+                x = ref.x + ref.width - width - spacerX;
+                y = ref.y + ref.height - height - spacerY;
                 break;
             default:
                 break;
         }
 
-        return new Rectangle(x, y, dim.width, dim.height);
+        dest.setBounds(x, y, width, height);
+        return dest;
     }
 
     /**
@@ -480,4 +530,144 @@ public class Positioner {
     public static Rectangle bottomRight(Rectangle ref) {
         return corner(ref, new Dimension(WIDTH, HEIGHT), Corner.BOTTOM_RIGHT, SPACER);
     }
+
+    /**
+     * Packing many rectangles at once. Each returns bounds in the same order as
+     * dims, with <code>null</code> for tiles that do not fit in container.
+     * Tiles are <code>spacer</code> apart and from the edges of container
+     */
+
+    /**
+     * Left to right, wrapping to a new row (as tall as its tallest tile) when a
+     * tile does not fit. O(n)
+     * 
+     * @param container Area to pack into
+     * @param dims      Sizes of the tiles
+     * @param spacer    Gap between tiles
+     * @return Bounds of each tile, or <code>null</code> where it does not fit
+     */
+    public static Rectangle[] flow(Rectangle container, Dimension[] dims, int spacer) {
+        Rectangle[] res = new Rectangle[dims.length];
+        int left = container.x + spacer;
+        int right = container.x + container.width - spacer;
+        int bottom = container.y + container.height - spacer;
+        int x = left;
+        int y = container.y + spacer;
+        int rowHeight = 0;
+
+        for (int i = 0; i < dims.length; i++) {
+            Dimension dim = dims[i];
+            if (x > left && x + dim.width > right) {
+                // Wrap
+                x = left;
+                y += rowHeight + spacer;
+                rowHeight = 0;
+            }
+            if (x + dim.width > right || y + dim.height > bottom) {
+                // Too wide for any row, or out of room below
+                continue;
+            }
+
+            res[i] = new Rectangle(x, y, dim.width, dim.height);
+            x += dim.width + spacer;
+            rowHeight = Math.max(rowHeight, dim.height);
+        }
+        return res;
+    }
+
+    /**
+     * @param container Area to pack into
+     * @param dims      Sizes of the tiles
+     * @return Tiles flowed with <code>SPACER</code> gaps
+     */
+    public static Rectangle[] flow(Rectangle container, Dimension[] dims) {
+        return flow(container, dims, SPACER);
+    }
+
+    /**
+     * Fixed grid of equal cells, each as big as the biggest tile, filled row by
+     * row. Tiles keep their own size in the top left of their cell. O(n)
+     * 
+     * @param container Area to pack into
+     * @param dims      Sizes of the tiles
+     * @param columns   Cells per row
+     * @param spacer    Gap between cells
+     * @return Bounds of each tile, or <code>null</code> where it does not fit
+     */
+    public static Rectangle[] grid(Rectangle container, Dimension[] dims, int columns, int spacer) {
+        if (columns <= 0) {
+            throw new IllegalArgumentException("Columns must be positive: " + columns);
+        }
+
+        int cellWidth = 0;
+        int cellHeight = 0;
+        for (Dimension dim : dims) {
+            cellWidth = Math.max(cellWidth, dim.width);
+            cellHeight = Math.max(cellHeight, dim.height);
+        }
+
+        Rectangle[] res = new Rectangle[dims.length];
+        int right = container.x + container.width - spacer;
+        int bottom = container.y + container.height - spacer;
+        for (int i = 0; i < dims.length; i++) {
+            int x = container.x + spacer + (i % columns) * (cellWidth + spacer);
+            int y = container.y + spacer + (i / columns) * (cellHeight + spacer);
+            if (x + cellWidth <= right && y + cellHeight <= bottom) {
+                res[i] = new Rectangle(x, y, dims[i].width, dims[i].height);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param container Area to pack into
+     * @param dims      Sizes of the tiles
+     * @param columns   Cells per row
+     * @return Tiles in a grid with <code>SPACER</code> gaps
+     */
+    public static Rectangle[] grid(Rectangle container, Dimension[] dims, int columns) {
+        return grid(container, dims, columns, SPACER);
+    }
+
+    /**
+     * Tightest packing: tiles sorted tallest first, each placed as high and then
+     * as far left as it fits (see <code>SkylinePacker</code>). O(n log n) to
+     * sort plus O(s) per tile for s skyline segments. To add tiles later without
+     * repacking, use a <code>SkylinePacker</code> directly
+     * 
+     * @param container Area to pack into
+     * @param dims      Sizes of the tiles
+     * @param spacer    Gap between tiles
+     * @return Bounds of each tile, or <code>null</code> where it does not fit
+     */
+    public static Rectangle[] skyline(Rectangle container, Dimension[] dims, int spacer) {
+        if (dims.length > 1 << 20) {
+            throw new IllegalArgumentException("Too many tiles: " + dims.length);
+        }
+
+        // Sort indices by height, then width, descending
+        long[] keys = new long[dims.length];
+        for (int i = 0; i < dims.length; i++) {
+            long size = ((long) dims[i].height << 16) | Math.min(dims[i].width, 0xFFFF);
+            keys[i] = ((0x7FFFFFFFFFFL - size) << 20) | i;
+        }
+        Arrays.sort(keys);
+
+        Rectangle[] res = new Rectangle[dims.length];
+        SkylinePacker packer = new SkylinePacker(container, spacer);
+        for (long key : keys) {
+            int i = (int) (key & 0xFFFFF);
+            res[i] = packer.add(dims[i]);
+        }
+        return res;
+    }
+
+    /**
+     * @param container Area to pack into
+     * @param dims      Sizes of the tiles
+     * @return Tiles packed with <code>SPACER</code> gaps
+     */
+    public static Rectangle[] skyline(Rectangle container, Dimension[] dims) {
+        return skyline(container, dims, SPACER);
+    }
 }
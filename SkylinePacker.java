@@ -0,0 +1,200 @@
+package gui;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Packs rectangles into a container one at a time, each as low and then as far
+ * left as it fits (bottom-left skyline packing, with "low" meaning near the top
+ * of the container). Tiles already placed never move, so new tiles can be added
+ * as they arrive. For example
+ *
+ * <pre>
+ * SkylinePacker packer = new SkylinePacker(dashboard.getBounds(), Positioner.SPACER);
+ * for (Widget w : widgets) {
+ *     Rectangle bounds = packer.add(w.getPreferredSize());
+ *     if (bounds != null) {
+ *         w.setBounds(bounds);
+ *     }
+ * }
+ * </pre>
+ *
+ * The skyline is the list of segments along the top of what is packed so far.
+ * Adding a tile checks every segment, so it costs O(s) where s is the number of
+ * segments (at most the container width over the narrowest tile, and usually
+ * far fewer). Packing tiles sorted by height, tallest first (as
+ * <code>Positioner.skyline</code> does), wastes the least space
+ */
+public class SkylinePacker {
+    private final Rectangle container;
+    private final int spacer;
+    /**
+     * Right and bottom edges tiles (with their gap) must stay within
+     */
+    private final int right;
+    private final int bottom;
+
+    /**
+     * Segments, left to right: x, height of the packed area at x, and width
+     */
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] widths = new int[16];
+    private int segments;
+
+    /**
+     * @param container Area to pack into
+     * @param spacer    Gap between tiles, and between tiles and the edges
+     */
+    public SkylinePacker(Rectangle container, int spacer) {
+        this.container = new Rectangle(container);
+        this.spacer = spacer;
+        // Each tile carries the gap to its right and below, so the far edges
+        // only need one gap
+        right = container.x + container.width;
+        bottom = container.y + container.height;
+        reset();
+    }
+
+    /**
+     * @param dim Size of the tile
+     * @return Bounds of the tile, or <code>null</code> if it does not fit
+     */
+    public Rectangle add(Dimension dim) {
+        return add(dim.width, dim.height);
+    }
+
+    /**
+     * @param width  Width of the tile
+     * @param height Height of the tile
+     * @return Bounds of the tile, or <code>null</code> if it does not fit
+     */
+    public Rectangle add(int width, int height) {
+        int w = width + spacer;
+        int h = height + spacer;
+
+        int best = -1;
+        int bestY = Integer.MAX_VALUE;
+        for (int i = 0; i < segments; i++) {
+            int y = fit(i, w, h);
+            // Lowest, then leftmost (segments are left to right)
+            if (y >= 0 && y < bestY) {
+                best = i;
+                bestY = y;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+
+        int x = xs[best];
+        place(best, x, bestY + h, w);
+        return new Rectangle(x, bestY, width, height);
+    }
+
+    /**
+     * Forget every tile
+     */
+    public void reset() {
+        segments = 1;
+        xs[0] = container.x + spacer;
+        ys[0] = container.y + spacer;
+        widths[0] = container.width - spacer;
+    }
+
+    /**
+     * @return Height from the top of the container to the bottom of the lowest
+     *         tile
+     */
+    public int usedHeight() {
+        int res = container.y + spacer;
+        for (int i = 0; i < segments; i++) {
+            res = Math.max(res, ys[i]);
+        }
+        return res - spacer - container.y;
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * @return y a tile of w x h could go at on segment i, or -1 if it does not fit
+     *         there
+     */
+    private int fit(int i, int w, int h) {
+        if (xs[i] + w > right) {
+            return -1;
+        }
+
+        int y = ys[i];
+        int covered = 0;
+        for (int j = i; covered < w; j++) {
+            y = Math.max(y, ys[j]);
+            if (y + h > bottom) {
+                return -1;
+            }
+            covered += widths[j];
+        }
+        return y;
+    }
+
+    /**
+     * Raise the skyline to top over [x, x + w) starting at segment i
+     */
+    private void place(int i, int x, int top, int w) {
+        // Find the segments the tile covers, trimming the last one
+        int end = x + w;
+        int j = i;
+        while (j < segments && xs[j] + widths[j] <= end) {
+            j++;
+        }
+        if (j < segments && xs[j] < end) {
+            widths[j] -= end - xs[j];
+            xs[j] = end;
+        }
+
+        // Segments i..j-1 are replaced by the new one
+        int removed = j - i;
+        if (removed == 0) {
+            ensureCapacity(segments + 1);
+            shift(i, 1);
+        } else if (removed > 1) {
+            shift(i + removed, 1 - removed);
+        }
+        xs[i] = x;
+        ys[i] = top;
+        widths[i] = w;
+
+        // Merge with neighbours at the same height
+        if (i + 1 < segments && ys[i + 1] == top) {
+            widths[i] += widths[i + 1];
+            shift(i + 2, -1);
+        }
+        if (i > 0 && ys[i - 1] == top) {
+            widths[i - 1] += widths[i];
+            shift(i + 1, -1);
+        }
+    }
+
+    /**
+     * Move segments from index from on by delta places
+     */
+    private void shift(int from, int delta) {
+        int count = segments - from;
+        System.arraycopy(xs, from, xs, from + delta, count);
+        System.arraycopy(ys, from, ys, from + delta, count);
+        System.arraycopy(widths, from, widths, from + delta, count);
+        segments += delta;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > xs.length) {
+            int size = Math.max(capacity, xs.length * 2);
+            xs = Arrays.copyOf(xs, size);
+            ys = Arrays.copyOf(ys, size);
+            widths = Arrays.copyOf(widths, size);
+        }
+    }
+}
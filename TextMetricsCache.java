@@ -0,0 +1,259 @@
+package gui;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers text widths for one font and rendering context, so repeated
+ * captions are only measured once. Safe to share between threads. Pass it to
+ * <code>DrawString(Graphics, TextMetricsCache)</code>, and persist it across
+ * launches with <code>LayoutSnapshot</code>.
+ * <p>
+ * At most <code>capacity</code> texts are remembered, so churning labels and
+ * long documents can't grow it without limit. Widths are kept in two
+ * generations of half the capacity each: when the newer one fills up, the older
+ * one is dropped and the newer one takes its place, and texts found in the
+ * older one move back to the newer one. Texts in use stay, and the rest are
+ * dropped after at most two generations
+ */
+public class TextMetricsCache {
+    /**
+     * Default maximum number of texts remembered
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private final FontMetrics fm;
+    private final Font font;
+    private final FontRenderContext frc;
+    private final String key;
+    private final int[] latin1;
+    private final int generationSize;
+
+    private volatile ConcurrentHashMap<String, Integer> recent = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, Integer> older = new ConcurrentHashMap<>();
+    /**
+     * Widths loaded from a snapshot, by content hash. Never changed once set
+     */
+    private volatile HashedWidths loaded;
+
+    /**
+     * @param fm Metrics of the font to measure with
+     */
+    public TextMetricsCache(FontMetrics fm) {
+        this(fm, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param fm       Metrics of the font to measure with
+     * @param capacity Maximum number of texts to remember
+     */
+    public TextMetricsCache(FontMetrics fm, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+        }
+        this.generationSize = capacity / 2;
+        this.fm = fm;
+        this.font = fm.getFont();
+        this.frc = fm.getFontRenderContext();
+        this.latin1 = Latin1Widths.table(fm);
+        this.key = font.getName() + "/" + font.getStyle() + "/" + font.getSize2D()
+            + "/" + frc.getTransform().getScaleX() + "x" + frc.getTransform().getScaleY()
+            + "/" + frc.getAntiAliasingHint() + "/" + frc.getFractionalMetricsHint();
+    }
+
+    /**
+     * @param g Graphics with the font to measure with
+     * @return New cache for the font and rendering context of g
+     */
+    public static TextMetricsCache of(Graphics g) {
+        return new TextMetricsCache(g.getFontMetrics());
+    }
+
+    /**
+     * @param g Graphics about to be measured on
+     * @return Whether widths from this cache are right for g
+     */
+    public boolean matches(Graphics g) {
+        return font.equals(g.getFont())
+            && (!(g instanceof Graphics2D) || frc.equals(((Graphics2D) g).getFontRenderContext()));
+    }
+
+    /**
+     * @param text Text without escapes
+     * @return Width of text, measured at most once
+     */
+    public int width(String text) {
+        ConcurrentHashMap<String, Integer> current = recent;
+        Integer res = current.get(text);
+        if (res != null) {
+            return res;
+        }
+
+        res = older.get(text);
+        int width = res != null ? res : measureUncached(text);
+        current.put(text, width);
+        if (current.size() >= generationSize) {
+            rotate(current);
+        }
+        return width;
+    }
+
+    /**
+     * Like <code>width</code>, but without remembering text that wasn't
+     * already known, for one-off text such as millions of table cells
+     *
+     * @param text Text without escapes
+     * @return Width of text
+     */
+    public int measure(String text) {
+        Integer res = recent.get(text);
+        if (res == null) {
+            res = older.get(text);
+        }
+        return res != null ? res : measureUncached(text);
+    }
+
+    /**
+     * Getters
+     */
+
+    /**
+     * @return Font, size, DPI scale and hints the widths are for
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * @return Metrics used to measure
+     */
+    public FontMetrics fontMetrics() {
+        return fm;
+    }
+
+    /**
+     * @return Number of texts remembered (a text moved back from the older
+     *         generation counts twice)
+     */
+    public int size() {
+        return recent.size() + older.size();
+    }
+
+    /**
+     * Snapshot support
+     */
+
+    /**
+     * @param text Text to hash
+     * @return 64 bit content hash of text
+     */
+    static long hash(CharSequence text) {
+        long h = 0x9E3779B97F4A7C15L ^ text.length();
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        // Final mix so similar strings spread out
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @param hashes Content hashes
+     * @param values Width of each hash
+     */
+    void load(long[] hashes, int[] values) {
+        loaded = new HashedWidths(hashes, values);
+    }
+
+    /**
+     * @param out Receives every remembered width by content hash, once each.
+     *            Loaded widths are included if they were used, so a snapshot
+     *            saved from this stays within the capacity
+     */
+    void forEach(HashConsumer out) {
+        ConcurrentHashMap<String, Integer> current = recent;
+        for (Map.Entry<String, Integer> entry : current.entrySet()) {
+            out.accept(hash(entry.getKey()), entry.getValue());
+        }
+        for (Map.Entry<String, Integer> entry : older.entrySet()) {
+            // Texts moved back are in both
+            if (!current.containsKey(entry.getKey())) {
+                out.accept(hash(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    interface HashConsumer {
+        void accept(long hash, int value);
+    }
+
+    /**
+     * Private Methods
+     */
+
+    /**
+     * Make the full generation the older one, unless another thread already did
+     */
+    private synchronized void rotate(ConcurrentHashMap<String, Integer> full) {
+        if (recent == full) {
+            older = full;
+            recent = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * @return Width of text from the loaded snapshot, or measured
+     */
+    private int measureUncached(String text) {
+        HashedWidths snapshot = loaded;
+        int width = snapshot == null ? -1 : snapshot.get(hash(text));
+        return width >= 0 ? width : Latin1Widths.width(fm, latin1, text);
+    }
+
+    /**
+     * Read-only open addressing map from content hash to width
+     */
+    private static final class HashedWidths {
+        private final long[] keys;
+        private final int[] values;
+        private final boolean[] used;
+        private final int mask;
+
+        HashedWidths(long[] hashes, int[] widths) {
+            int capacity = Integer.highestOneBit(Math.max(4, hashes.length * 2 - 1)) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            used = new boolean[capacity];
+            mask = capacity - 1;
+
+            for (int i = 0; i < hashes.length; i++) {
+                int slot = (int) hashes[i] & mask;
+                while (used[slot] && keys[slot] != hashes[i]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = hashes[i];
+                values[slot] = widths[i];
+            }
+        }
+
+        /**
+         * @return Width for hash, or -1 if unknown
+         */
+        int get(long hash) {
+            for (int slot = (int) hash & mask; used[slot]; slot = (slot + 1) & mask) {
+                if (keys[slot] == hash) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+    }
+}
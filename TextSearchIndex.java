@@ -0,0 +1,538 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.JTextArea;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+
+import gui.util.IntPair;
+
+/**
+ * Substring and regex search over large, growing text without blocking the EDT.
+ * <p>
+ * A background thread keeps its own copy of the text and a trigram index of it
+ * (every 3-char sequence to the offsets it starts at), built in chunks as text
+ * arrives. Substring queries check only the offsets of the query's rarest
+ * trigram, plus a plain scan of any text not indexed yet. Regex queries scan the
+ * copy on the background thread. Hits are (start, end) offsets, sorted.
+ * <p>
+ * Feed it with <code>append</code>/<code>insert</code>/<code>remove</code>
+ * (e.g. the lines given to <code>drawLines</code>, joined with
+ * <code>'\n'</code>), or attach it to a text area. For example
+ *
+ * <pre>
+ * JScrollPane pane = Components.scrollPane(log, bounds, parent, true);
+ * JTextArea area = (JTextArea) pane.getViewport().getView();
+ * TextSearchIndex index = new TextSearchIndex().attach(area);
+ * ...
+ * index.highlight("ERROR");      // On the EDT; only visible hits are highlighted
+ * </pre>
+ *
+ * The index is built for appends (logs, streams). An edit anywhere else
+ * re-indexes from the edit onward, still in the background. It takes about
+ * 4 bytes per indexed char on top of the copy of the text
+ */
+public class TextSearchIndex {
+    /**
+     * Positions indexed per background task, so queries can run in between
+     */
+    private static final int CHUNK = 1 << 16;
+
+    private final ExecutorService worker;
+
+    /**
+     * Worker thread only
+     */
+    private final StringBuilder text = new StringBuilder();
+    private final HashMap<Long, Postings> trigrams = new HashMap<>();
+    /**
+     * Trigrams starting before this offset are indexed
+     */
+    private int indexed;
+    private boolean indexing;
+
+    /**
+     * EDT only
+     */
+    private JTextArea area;
+    private DocumentListener listener;
+    private ChangeListener scrollListener;
+    private Highlighter.HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(Color.YELLOW);
+    private final ArrayList<Object> tags = new ArrayList<>();
+    private List<IntPair> hits = Collections.emptyList();
+    /**
+     * Query being highlighted: a String or Pattern
+     */
+    private Object query;
+    private boolean querying;
+    /**
+     * Edits that move existing text (not appends), and all edits, so far
+     */
+    private int moves;
+    private int edits;
+
+    public TextSearchIndex() {
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread res = new Thread(r, "Text search index");
+            res.setDaemon(true);
+            return res;
+        });
+    }
+
+    /**
+     * Text (any thread; applied in order)
+     */
+
+    /**
+     * @param more Text to add at the end
+     */
+    public void append(String more) {
+        worker.execute(() -> {
+            text.append(more);
+            scheduleIndexing();
+        });
+    }
+
+    /**
+     * @param offset Where to insert
+     * @param more   Text to insert
+     */
+    public void insert(int offset, String more) {
+        worker.execute(() -> {
+            boolean atEnd = offset == text.length();
+            text.insert(offset, more);
+            if (!atEnd) {
+                invalidateFrom(offset);
+            }
+            scheduleIndexing();
+        });
+    }
+
+    /**
+     * @param offset Start of the text to remove
+     * @param length Number of chars to remove
+     */
+    public void remove(int offset, int length) {
+        worker.execute(() -> {
+            text.delete(offset, offset + length);
+            invalidateFrom(offset);
+            scheduleIndexing();
+        });
+    }
+
+    /**
+     * Forget all text
+     */
+    public void clear() {
+        worker.execute(() -> {
+            text.setLength(0);
+            trigrams.clear();
+            indexed = 0;
+        });
+    }
+
+    /**
+     * Stop the background thread. The index cannot be used afterwards
+     */
+    public void close() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Queries (any thread)
+     */
+
+    /**
+     * @param literal Text to find
+     * @return (start, end) of every occurrence (overlapping ones included), in
+     *         the text as of this call
+     */
+    public CompletableFuture<List<IntPair>> find(String literal) {
+        return CompletableFuture.supplyAsync(() -> findNow(literal), worker);
+    }
+
+    /**
+     * @param regex Pattern to find
+     * @return (start, end) of every match, in the text as of this call
+     */
+    public CompletableFuture<List<IntPair>> findRegex(Pattern regex) {
+        return CompletableFuture.supplyAsync(() -> findNow(regex), worker);
+    }
+
+    /**
+     * Text areas (EDT only)
+     */
+
+    /**
+     * Index the text of an area and keep following its edits. Highlights go in
+     * the area's highlighter
+     *
+     * @param area Area to search
+     * @return this
+     */
+    public TextSearchIndex attach(JTextArea area) {
+        detach();
+        this.area = area;
+
+        Document doc = area.getDocument();
+        clear();
+        try {
+            append(doc.getText(0, doc.getLength()));
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        listener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                int offset = e.getOffset();
+                boolean atEnd = offset + e.getLength() == e.getDocument().getLength();
+                try {
+                    insert(offset, e.getDocument().getText(offset, e.getLength()));
+                } catch (BadLocationException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                edited(!atEnd);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                remove(e.getOffset(), e.getLength());
+                edited(true);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attributes only
+            }
+        };
+        doc.addDocumentListener(listener);
+
+        if (area.getParent() instanceof JViewport) {
+            scrollListener = e -> showVisible();
+            ((JViewport) area.getParent()).addChangeListener(scrollListener);
+        }
+        return this;
+    }
+
+    /**
+     * Stop following the attached area and remove its highlights
+     */
+    public void detach() {
+        if (area == null) {
+            return;
+        }
+        clearHighlights();
+        area.getDocument().removeDocumentListener(listener);
+        if (scrollListener != null && area.getParent() instanceof JViewport) {
+            ((JViewport) area.getParent()).removeChangeListener(scrollListener);
+        }
+        area = null;
+        listener = null;
+        scrollListener = null;
+        query = null;
+        hits = Collections.emptyList();
+    }
+
+    /**
+     * Highlight every occurrence of literal in the attached area, kept up to
+     * date as text is added. Only hits in view are given highlights
+     *
+     * @param literal Text to find, or <code>null</code> to stop highlighting
+     */
+    public void highlight(String literal) {
+        startHighlighting(literal);
+    }
+
+    /**
+     * Like <code>highlight(String)</code>, for a pattern
+     *
+     * @param regex Pattern to find, or <code>null</code> to stop highlighting
+     */
+    public void highlight(Pattern regex) {
+        startHighlighting(regex);
+    }
+
+    /**
+     * @param painter How to paint highlights
+     */
+    public void setPainter(Highlighter.HighlightPainter painter) {
+        this.painter = painter;
+        showVisible();
+    }
+
+    /**
+     * @return Hits of the current highlight query, as last computed
+     */
+    public List<IntPair> hits() {
+        return hits;
+    }
+
+    /**
+     * Private Methods
+     */
+
+    private void startHighlighting(Object newQuery) {
+        query = newQuery;
+        hits = Collections.emptyList();
+        if (newQuery == null) {
+            clearHighlights();
+            return;
+        }
+        requery();
+    }
+
+    /**
+     * Run the highlight query again, unless it is already running
+     */
+    private void requery() {
+        if (area == null || query == null || querying) {
+            return;
+        }
+        querying = true;
+
+        Object q = query;
+        int movesBefore = moves;
+        int editsBefore = edits;
+        CompletableFuture<List<IntPair>> result = q instanceof Pattern ? findRegex((Pattern) q) : find((String) q);
+        result.thenAccept(found -> SwingUtilities.invokeLater(() -> {
+            querying = false;
+            if (q != query) {
+                // Replaced while running
+                requery();
+                return;
+            }
+            if (moves == movesBefore) {
+                // Offsets are still right; only appends (if anything) came in since
+                hits = found;
+                showVisible();
+            }
+            if (edits != editsBefore) {
+                requery();
+            }
+        }));
+    }
+
+    /**
+     * @param moved Whether existing text moved (so hits are stale)
+     */
+    private void edited(boolean moved) {
+        edits++;
+        if (moved) {
+            moves++;
+            hits = Collections.emptyList();
+            clearHighlights();
+        }
+        requery();
+    }
+
+    /**
+     * Highlight the hits in view of the attached area
+     */
+    private void showVisible() {
+        clearHighlights();
+        if (area == null || hits.isEmpty()) {
+            return;
+        }
+
+        Rectangle view = area.getVisibleRect();
+        int from = area.viewToModel2D(new Point(view.x, view.y));
+        int to = area.viewToModel2D(new Point(view.x + view.width, view.y + view.height));
+        Highlighter highlighter = area.getHighlighter();
+        int length = area.getDocument().getLength();
+
+        for (int i = firstEndingAfter(hits, from); i < hits.size() && hits.get(i).get0() <= to; i++) {
+            IntPair hit = hits.get(i);
+            if (hit.get1() > length) {
+                break;
+            }
+            try {
+                tags.add(highlighter.addHighlight(hit.get0(), hit.get1(), painter));
+            } catch (BadLocationException e) {
+                break;
+            }
+        }
+    }
+
+    private void clearHighlights() {
+        if (area != null) {
+            Highlighter highlighter = area.getHighlighter();
+            for (Object tag : tags) {
+                highlighter.removeHighlight(tag);
+            }
+        }
+        tags.clear();
+    }
+
+    /**
+     * @return Index of the first hit ending after offset (hits are sorted by
+     *         start, and so by end)
+     */
+    private static int firstEndingAfter(List<IntPair> hits, int offset) {
+        int lo = 0;
+        int hi = hits.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (hits.get(mid).get1() <= offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Worker thread
+     */
+
+    private List<IntPair> findNow(String literal) {
+        int n = literal.length();
+        ArrayList<IntPair> res = new ArrayList<>();
+        if (n == 0) {
+            return res;
+        }
+        if (n < 3) {
+            scan(literal, 0, res);
+            return res;
+        }
+
+        // Rarest trigram of the query; a missing one means no indexed hits
+        int best = 0;
+        Postings bestPostings = null;
+        for (int k = 0; k + 3 <= n; k++) {
+            Postings postings = trigrams.get(key(literal, k));
+            int size = postings == null ? 0 : postings.size;
+            if (bestPostings == null || size < bestPostings.size) {
+                best = k;
+                bestPostings = postings == null ? Postings.EMPTY : postings;
+            }
+        }
+
+        // Hits whose chosen trigram is indexed
+        int last = text.length() - n;
+        for (int i = 0; i < bestPostings.size; i++) {
+            int start = bestPostings.positions[i] - best;
+            if (start >= 0 && start <= last && matches(literal, start)) {
+                res.add(new IntPair(start, start + n));
+            }
+        }
+
+        // Hits whose chosen trigram is not indexed yet
+        scan(literal, Math.max(0, indexed - best), res);
+        return res;
+    }
+
+    private List<IntPair> findNow(Pattern regex) {
+        ArrayList<IntPair> res = new ArrayList<>();
+        Matcher m = regex.matcher(text);
+        while (m.find()) {
+            res.add(new IntPair(m.start(), m.end()));
+        }
+        return res;
+    }
+
+    private void scan(String literal, int from, ArrayList<IntPair> res) {
+        for (int i = text.indexOf(literal, from); i >= 0; i = text.indexOf(literal, i + 1)) {
+            res.add(new IntPair(i, i + literal.length()));
+        }
+    }
+
+    private boolean matches(String literal, int start) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (text.charAt(start + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forget trigrams that overlap text from offset on
+     */
+    private void invalidateFrom(int offset) {
+        int from = Math.max(0, offset - 2);
+        if (from >= indexed) {
+            return;
+        }
+        for (Postings postings : trigrams.values()) {
+            postings.truncate(from);
+        }
+        indexed = from;
+    }
+
+    private void scheduleIndexing() {
+        if (!indexing && indexed + 3 <= text.length()) {
+            indexing = true;
+            worker.execute(this::indexChunk);
+        }
+    }
+
+    private void indexChunk() {
+        indexing = false;
+        int end = Math.min(text.length() - 2, indexed + CHUNK);
+        for (int i = indexed; i < end; i++) {
+            trigrams.computeIfAbsent(key(text, i), k -> new Postings()).add(i);
+        }
+        indexed = Math.max(indexed, end);
+        scheduleIndexing();
+    }
+
+    private static long key(CharSequence s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /**
+     * Sorted offsets where one trigram starts
+     */
+    private static final class Postings {
+        static final Postings EMPTY = new Postings();
+
+        int[] positions = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        /**
+         * Drop offsets from offset on
+         */
+        void truncate(int offset) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (positions[mid] < offset) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            size = lo;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package gui;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Renders very large canvases (poster-size exports, wall displays) on several
+ * cores. The target is cut into tiles, and each tile replays the same painting
+ * code on its own <code>Graphics2D</code> over a sub-image of the target,
+ * clipped to the tile. Sub-images share the target's pixels, so there is
+ * nothing to composite afterwards. For example
+ *
+ * <pre>
+ * BufferedImage poster = new BufferedImage(8000, 6000, BufferedImage.TYPE_INT_RGB);
+ * new TiledRenderer().render(poster, g -&gt; {
+ *     DrawString drawer = new DrawString(g);
+ *     drawer.drawLines(reportLines, 20, 40);
+ * });
+ * </pre>
+ *
+ * The painter runs concurrently for different tiles, so it must not share
+ * mutable state (such as a <code>DrawString</code>) between calls.
+ * <code>DrawString.drawLines</code> starts at the first line inside the clip,
+ * so each tile only pays for what it shows. Painters of other content can take
+ * the tile's bounds too (<code>render(BufferedImage, BiConsumer)</code>) and
+ * only paint what falls inside them
+ */
+public class TiledRenderer {
+    /**
+     * Default width and height of a tile
+     */
+    public static final int TILE_SIZE = 512;
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+
+    /**
+     * @param pool     Pool to render tiles on
+     * @param tileSize Width and height of a tile
+     */
+    public TiledRenderer(ForkJoinPool pool, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Standard tiles on the common pool
+     */
+    public TiledRenderer() {
+        this(ForkJoinPool.commonPool(), TILE_SIZE);
+    }
+
+    /**
+     * Paint the whole target, a tile at a time in parallel
+     *
+     * @param target  Image to paint into
+     * @param painter Paints the full canvas on the graphics it is given. Called
+     *                once per tile, possibly at the same time on several threads
+     */
+    public void render(BufferedImage target, Consumer<Graphics2D> painter) {
+        render(target, (g, tile) -> painter.accept(g));
+    }
+
+    /**
+     * Paint the whole target, a tile at a time in parallel
+     *
+     * @param target  Image to paint into
+     * @param painter Paints the canvas on the graphics it is given, at least
+     *                the part in the tile bounds it is given (in canvas
+     *                coordinates, the same as the clip). Called once per tile,
+     *                possibly at the same time on several threads
+     */
+    public void render(BufferedImage target, BiConsumer<Graphics2D, Rectangle> painter) {
+        int columns = (target.getWidth() + tileSize - 1) / tileSize;
+        int rows = (target.getHeight() + tileSize - 1) / tileSize;
+        pool.invoke(new Tiles(target, painter, columns, 0, columns * rows));
+    }
+
+    /**
+     * @param width     Width of the new image
+     * @param height    Height of the new image
+     * @param imageType Type of the new image (e.g.
+     *                  <code>BufferedImage.TYPE_INT_RGB</code>)
+     * @param painter   Paints the full canvas (see
+     *                  <code>render(BufferedImage, Consumer)</code>)
+     * @return New image with the canvas painted on it
+     */
+    public BufferedImage render(int width, int height, int imageType, Consumer<Graphics2D> painter) {
+        return render(width, height, imageType, (g, tile) -> painter.accept(g));
+    }
+
+    /**
+     * @param width     Width of the new image
+     * @param height    Height of the new image
+     * @param imageType Type of the new image
+     * @param painter   Paints the tile of the canvas it is given (see
+     *                  <code>render(BufferedImage, BiConsumer)</code>)
+     * @return New image with the canvas painted on it
+     */
+    public BufferedImage render(int width, int height, int imageType, BiConsumer<Graphics2D, Rectangle> painter) {
+        BufferedImage res = new BufferedImage(width, height, imageType);
+        render(res, painter);
+        return res;
+    }
+
+    /**
+     * Range of tiles, split in half until one is left
+     */
+    private class Tiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BufferedImage target;
+        private final BiConsumer<Graphics2D, Rectangle> painter;
+        private final int columns;
+        private final int from;
+        private final int to;
+
+        Tiles(BufferedImage target, BiConsumer<Graphics2D, Rectangle> painter, int columns, int from, int to) {
+            this.target = target;
+            this.painter = painter;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Tiles(target, painter, columns, from, mid),
+                        new Tiles(target, painter, columns, mid, to));
+                return;
+            }
+            if (to == from) {
+                return;
+            }
+
+            int x = (from % columns) * tileSize;
+            int y = (from / columns) * tileSize;
+            int w = Math.min(tileSize, target.getWidth() - x);
+            int h = Math.min(tileSize, target.getHeight() - y);
+
+            // Drawing on the sub-image writes straight into the target's pixels
+            Graphics2D g = target.getSubimage(x, y, w, h).createGraphics();
+            try {
+                g.translate(-x, -y);
+                g.clipRect(x, y, w, h);
+                painter.accept(g, new Rectangle(x, y, w, h));
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+}
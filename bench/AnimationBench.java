@@ -0,0 +1,95 @@
+package gui.bench;
+
+import java.awt.Rectangle;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import gui.Animator;
+import gui.Positioner;
+import gui.util.Easing;
+
+/**
+ * Slides thousands of panels between <code>Positioner</code> positions at
+ * once, either with one <code>Animator</code> (<code>mode=shared</code>) or
+ * with a Swing timer per panel building a new <code>Rectangle</code> every
+ * tick (<code>mode=timers</code>). Reports ticks, EDT time and bytes allocated
+ * on the EDT. Settings are <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java gui.bench.AnimationBench mode=shared panels=5000 millis=2000
+ * </pre>
+ */
+public class AnimationBench {
+    public static void main(String[] args) throws Exception {
+        BenchArgs settings = BenchArgs.parse(args, "mode", "panels", "millis");
+        String mode = settings.get("mode", "shared");
+        int panels = settings.getInt("panels", 5000);
+        int millis = settings.getInt("millis", 2000);
+
+        JPanel root = new JPanel(null);
+        root.setSize(4000, 4000);
+        JPanel[] children = new JPanel[panels];
+        Rectangle[] targets = new Rectangle[panels];
+        Random random = new Random(1);
+        for (int i = 0; i < panels; i++) {
+            children[i] = new JPanel();
+            Rectangle start = new Rectangle(random.nextInt(3800), random.nextInt(3800), Positioner.WIDTH,
+                    Positioner.HEIGHT);
+            children[i].setBounds(start);
+            root.add(children[i]);
+            targets[i] = Positioner.under(children[i]);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] edt = new long[1];
+        SwingUtilities.invokeAndWait(() -> edt[0] = Thread.currentThread().getId());
+        long cpuBefore = threads.getThreadCpuTime(edt[0]);
+        long allocatedBefore = threads.getThreadAllocatedBytes(edt[0]);
+
+        CountDownLatch finished = new CountDownLatch(panels);
+        long[] ticks = new long[1];
+        Animator animator = new Animator();
+        long begin = System.nanoTime();
+        SwingUtilities.invokeAndWait(() -> {
+            for (int i = 0; i < panels; i++) {
+                JPanel child = children[i];
+                Rectangle start = child.getBounds();
+                Rectangle target = targets[i];
+                if (mode.equals("shared")) {
+                    animator.animate(child, start, target, millis, Easing.EASE_IN_OUT, finished::countDown);
+                } else {
+                    long t0 = System.nanoTime();
+                    Timer timer = new Timer(1000 / Animator.DEFAULT_RATE, null);
+                    timer.addActionListener(e -> {
+                        ticks[0]++;
+                        double f = Math.min(1, (System.nanoTime() - t0) / (millis * 1e6));
+                        double eased = Easing.EASE_IN_OUT.apply(f);
+                        child.setBounds(new Rectangle(start.x + (int) Math.round((target.x - start.x) * eased),
+                                start.y + (int) Math.round((target.y - start.y) * eased), target.width, target.height));
+                        if (f >= 1) {
+                            timer.stop();
+                            finished.countDown();
+                        }
+                    });
+                    timer.start();
+                }
+            }
+        });
+        finished.await();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        long cpu = threads.getThreadCpuTime(edt[0]) - cpuBefore;
+        long allocated = threads.getThreadAllocatedBytes(edt[0]) - allocatedBefore;
+        System.out.printf("mode=%s panels=%d wall=%.2fs EDT cpu=%.0fms EDT allocated=%dKB ticks=%d%n", mode, panels,
+                seconds, cpu / 1e6, allocated >> 10, mode.equals("shared") ? animator.ticks() : ticks[0]);
+        if (mode.equals("shared")) {
+            System.out.println("tick " + animator.tickLatency().snapshot());
+        }
+        System.exit(0);
+    }
+}
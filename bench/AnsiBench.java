@@ -0,0 +1,250 @@
+package gui.bench;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+
+import gui.AnsiParser;
+import gui.DrawString;
+
+/**
+ * Checks <code>AnsiParser</code> and the escape skipping in
+ * <code>DrawString.drawString</code> against known terminal output, and that
+ * parsing in one-char chunks gives the same result as parsing whole. Then
+ * checks <code>DrawString.drawAnsi</code> of a long colored log draws the same
+ * inside a clip as without one, and times drawing the whole log against a
+ * screenful of it. Exits with status 1 on the first mismatch. Settings are
+ * <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java gui.bench.AnsiBench lines=20000 rounds=20
+ * </pre>
+ */
+public class AnsiBench {
+    private static final String ESC = "\u001B";
+
+    /**
+     * Input, and the text it should leave
+     */
+    private static final String[][] TEXT_CASES = {
+        { ESC + "[1;31mred bold" + ESC + "[0m ok", "red bold ok" },
+        { ESC + "[2K" + ESC + "]0;title\u0007line", "line" },
+        { ESC + "]8;;http://x" + ESC + "\\link" + ESC + "]8;;" + ESC + "\\", "link" },
+        { ESC + "[?25lhidden cursor", "hidden cursor" },
+        // tput sgr0: charset designation, then reset
+        { ESC + "[31mred" + ESC + "(B" + ESC + "[m plain", "red plain" },
+        { ESC + "(0" + ESC + ")B" + ESC + "#8x", "x" },
+        { ESC + "7saved" + ESC + "8", "saved" },
+    };
+
+    /**
+     * Input with cursor controls, which drawAnsi should draw like drawString
+     */
+    private static final String[] CURSOR_CASES = {
+        "progress 10%\rprogress 20%",
+        "ab\bX",
+        "one\ftwo\fthree",
+        "a\tb\rc",
+        ESC + "[1mbold" + ESC + "[m\rplain",
+        "line\nover\b\b\bOVER\n\ttab",
+    };
+
+    /**
+     * Input, and the foreground and background of its first run
+     */
+    private static final Object[][] STYLE_CASES = {
+        // ITU T.416 colon form, with the (empty) color space id
+        { ESC + "[38:2::10:20:30mx", new Color(10, 20, 30), null },
+        { ESC + "[38:2:10:20:30mx", new Color(10, 20, 30), null },
+        { ESC + "[38;2;10;20;30mx", new Color(10, 20, 30), null },
+        { ESC + "[48:2::1:2:3;38:5:196mx", new Color(255, 0, 0), new Color(1, 2, 3) },
+        { ESC + "[58:2::1:2:3;31mx", new Color(205, 0, 0), null },
+    };
+
+    public static void main(String[] args) {
+        BenchArgs settings = BenchArgs.parse(args, "lines", "rounds");
+        int lines = settings.getInt("lines", 20000);
+        int rounds = settings.getInt("rounds", 20);
+        if (lines < 1 || rounds < 1) {
+            BenchArgs.usage("lines and rounds must be at least 1");
+        }
+
+        for (String[] c : TEXT_CASES) {
+            AnsiParser whole = new AnsiParser();
+            whole.append(c[0]);
+            check(whole.text().toString().equals(c[1]), "text of " + escaped(c[0]) + " is \"" + whole.text() + "\"");
+
+            AnsiParser chunked = new AnsiParser();
+            for (int i = 0; i < c[0].length(); i++) {
+                chunked.append(c[0].substring(i, i + 1));
+            }
+            check(dump(chunked).equals(dump(whole)), "chunked parse of " + escaped(c[0]) + " differs");
+
+            check(samePixels(c[0], c[1]), "drawString of " + escaped(c[0]) + " differs from \"" + c[1] + "\"");
+        }
+        for (Object[] c : STYLE_CASES) {
+            AnsiParser parsed = new AnsiParser();
+            parsed.append((String) c[0]);
+            AnsiParser.Style s = parsed.style(parsed.runStyle(0));
+            check(Objects.equals(s.foreground, c[1]) && Objects.equals(s.background, c[2]),
+                "style of " + escaped((String) c[0]) + " is " + s.foreground + " on " + s.background);
+        }
+        for (String c : CURSOR_CASES) {
+            check(sameAsDrawString(c), "drawAnsi of " + escaped(c) + " differs from drawString");
+        }
+
+        // A truecolor gradient can't grow the style table without limit
+        AnsiParser gradient = new AnsiParser();
+        for (int i = 0; i < 1 << 16; i++) {
+            gradient.append(ESC + "[38;2;" + (i & 0xFF) + ";" + (i >> 8) + ";0mx");
+        }
+        // 1024 exact styles, then 17 x 17 rounded colors per attribute set
+        check(gradient.styleCount() <= 1024 + 17 * 17 * 8, "gradient made " + gradient.styleCount() + " styles");
+
+        System.out.println("escape checks pass ("
+            + (TEXT_CASES.length + STYLE_CASES.length + CURSOR_CASES.length + 1) + " cases)");
+
+        AnsiParser log = log(lines);
+        BufferedImage image = new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        DrawString drawer = new DrawString(g);
+        int height = drawer.height();
+
+        // A screenful from the middle of the log, clipped and not
+        int y = 20 - height * (lines / 2);
+        Point whole = drawer.drawAnsi(log, 5, y);
+        BufferedImage unclipped = copy(image);
+        clear(image);
+        g.setClip(0, 100, 600, 200);
+        Point clipped = drawer.drawAnsi(log, 5, y);
+        check(clipped.equals(whole), "clipped drawAnsi ends at " + clipped + ", not " + whole);
+        for (int py = 100; py < 300; py++) {
+            for (int px = 0; px < 600; px++) {
+                check(image.getRGB(px, py) == unclipped.getRGB(px, py), "clipped drawAnsi differs at " + px + "," + py);
+            }
+        }
+        System.out.println("drawAnsi clip check pass (" + lines + " lines)");
+
+        g.setClip(null);
+        double all = time(drawer, log, y, rounds);
+        g.setClip(0, 0, 600, 400);
+        double screen = time(drawer, log, y, rounds);
+        g.dispose();
+        System.out.printf("drawAnsi %d lines: all %.0fus, clipped to a screen %.0fus%n", lines, all, screen);
+    }
+
+    /**
+     * @return Microseconds per drawAnsi call, best of rounds
+     */
+    private static double time(DrawString drawer, AnsiParser log, int y, int rounds) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            drawer.drawAnsi(log, 5, y);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1000.0;
+    }
+
+    /**
+     * @return Parsed log of colored compiler-like output
+     */
+    private static AnsiParser log(int lines) {
+        AnsiParser res = new AnsiParser();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sb.setLength(0);
+            sb.append(ESC).append("[1m").append("src/Main").append(i % 97).append(".java:").append(i).append(ESC).append("[0m\t");
+            sb.append(ESC).append(i % 3 == 0 ? "[31m" : "[33;44m").append(i % 3 == 0 ? "error" : "warning").append(ESC).append("[m");
+            sb.append(": ").append(ESC).append("[4munused").append(ESC).append("[24m variable x").append(i).append('\n');
+            res.append(sb);
+        }
+        return res;
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage res = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        image.copyData(res.getRaster());
+        return res;
+    }
+
+    private static void clear(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+    }
+
+    private static void check(boolean ok, String failure) {
+        if (!ok) {
+            System.out.println("FAIL " + failure);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return Text, runs and their styles
+     */
+    private static String dump(AnsiParser parsed) {
+        StringBuilder sb = new StringBuilder(parsed.text()).append('|');
+        for (int r = 0; r < parsed.runCount(); r++) {
+            AnsiParser.Style s = parsed.style(parsed.runStyle(r));
+            sb.append(parsed.runOffset(r)).append(',').append(parsed.runLength(r)).append(':')
+                .append(s.foreground).append(s.background).append(s.bold).append(s.italic).append(s.underline)
+                .append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Whether drawString draws a and b the same
+     */
+    private static boolean samePixels(String a, String b) {
+        return samePixels(draw(a), draw(b));
+    }
+
+    private static boolean samePixels(BufferedImage imageA, BufferedImage imageB) {
+        for (int y = 0; y < imageA.getHeight(); y++) {
+            for (int x = 0; x < imageA.getWidth(); x++) {
+                if (imageA.getRGB(x, y) != imageB.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether drawAnsi draws text (parsed) like drawString
+     */
+    private static boolean sameAsDrawString(String text) {
+        BufferedImage expected = draw(text);
+        BufferedImage actual = new BufferedImage(expected.getWidth(), expected.getHeight(), expected.getType());
+        Graphics2D g = actual.createGraphics();
+        g.setColor(Color.WHITE);
+        DrawString drawer = new DrawString(g);
+        AnsiParser parsed = new AnsiParser();
+        parsed.append(text);
+        // drawString(text, x, y) puts the first baseline two lines below y
+        drawer.drawAnsi(parsed, 5, 5 + 2 * drawer.height());
+        g.dispose();
+        return samePixels(expected, actual);
+    }
+
+    private static BufferedImage draw(String text) {
+        BufferedImage res = new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = res.createGraphics();
+        g.setColor(Color.WHITE);
+        new DrawString(g).drawString(text, 5, 5);
+        g.dispose();
+        return res;
+    }
+
+    private static String escaped(String s) {
+        return s.replace(ESC, "\\e").replace("\u0007", "\\a");
+    }
+}
@@ -0,0 +1,99 @@
+package gui.bench;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <code>key=value</code> settings of a bench's <code>main</code>. Anything
+ * that isn't a known <code>key=value</code>, or a value that doesn't parse, is
+ * a usage error: it is printed and the bench exits with status 2 (status 1 is
+ * left for failed checks)
+ */
+final class BenchArgs {
+    private final Map<String, String> settings = new HashMap<>();
+
+    /**
+     * Parse settings, and run headless unless <code>java.awt.headless</code>
+     * was given
+     *
+     * @param args Arguments of <code>main</code>
+     * @param keys Known keys
+     */
+    static BenchArgs parse(String[] args, String... keys) {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+
+        List<String> known = Arrays.asList(keys);
+        BenchArgs parsed = new BenchArgs();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                usage("Expected key=value, got " + arg);
+            }
+            String key = arg.substring(0, eq);
+            if (!known.contains(key)) {
+                usage("Unknown setting " + key + ", expected one of " + String.join(", ", keys));
+            }
+            parsed.settings.put(key, arg.substring(eq + 1));
+        }
+        return parsed;
+    }
+
+    /**
+     * Print message and exit with status 2
+     */
+    static void usage(String message) {
+        System.err.println(message);
+        System.exit(2);
+    }
+
+    /** Getters */
+
+    boolean has(String key) {
+        return settings.containsKey(key);
+    }
+
+    String get(String key, String def) {
+        return settings.getOrDefault(key, def);
+    }
+
+    int getInt(String key, int def) {
+        try {
+            return has(key) ? Integer.parseInt(settings.get(key)) : def;
+        } catch (NumberFormatException e) {
+            usage(key + " must be an integer, got " + settings.get(key));
+            return def;
+        }
+    }
+
+    long getLong(String key, long def) {
+        try {
+            return has(key) ? Long.parseLong(settings.get(key)) : def;
+        } catch (NumberFormatException e) {
+            usage(key + " must be an integer, got " + settings.get(key));
+            return def;
+        }
+    }
+
+    double getDouble(String key, double def) {
+        try {
+            return has(key) ? Double.parseDouble(settings.get(key)) : def;
+        } catch (NumberFormatException e) {
+            usage(key + " must be a number, got " + settings.get(key));
+            return def;
+        }
+    }
+
+    <E extends Enum<E>> E getEnum(String key, E def) {
+        try {
+            return has(key) ? Enum.valueOf(def.getDeclaringClass(), settings.get(key)) : def;
+        } catch (IllegalArgumentException e) {
+            usage(key + " must be one of " + Arrays.toString(def.getDeclaringClass().getEnumConstants())
+                    + ", got " + settings.get(key));
+            return def;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package gui.bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+
+import gui.DrawString;
+import gui.FrameCapture;
+import gui.Positioner;
+import gui.util.LatencyHistogram;
+
+/**
+ * Frame rate of a labelled dashboard recorded to PNG (or raw) frames, encoding
+ * on the painting thread (<code>mode=sync</code>) against handing frames to
+ * <code>FrameCapture</code> (<code>mode=async</code>). Settings are
+ * <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java gui.bench.CaptureBench mode=async frames=300 fps=30 policy=DROP_OLDEST queue=8 workers=2 format=PNG
+ * </pre>
+ *
+ * <code>fps</code> paces the frames like a Swing timer would (0 runs flat out).
+ * Frames go to a temporary directory, deleted afterwards unless
+ * <code>dir</code> is given
+ */
+public class CaptureBench {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs settings = BenchArgs.parse(args, "mode", "frames", "fps", "labels", "policy", "format", "queue",
+                "workers", "dir");
+        String mode = settings.get("mode", "async");
+        int frames = settings.getInt("frames", 300);
+        int fps = settings.getInt("fps", 30);
+        int labels = settings.getInt("labels", 600);
+        FrameCapture.DropPolicy policy = settings.getEnum("policy", FrameCapture.DropPolicy.DROP_OLDEST);
+        FrameCapture.Format format = settings.getEnum("format", FrameCapture.Format.PNG);
+        int queue = settings.getInt("queue", 8);
+        int workers = settings.getInt("workers", 2);
+        boolean keep = settings.has("dir");
+        Path dir = keep ? Path.of(settings.get("dir", "")) : Files.createTempDirectory("capture");
+
+        Random random = new Random(1);
+        String[] text = new String[labels];
+        Consumer<Graphics2D> painter = g -> {
+            for (int i = 0; i < labels; i++) {
+                text[i] = "Sensor " + i + ": " + random.nextInt(100000);
+            }
+            g.setColor(Color.BLACK);
+            DrawString drawer = new DrawString(g);
+            Rectangle ref = Positioner.topLeft(new Rectangle(0, 0, WIDTH, HEIGHT));
+            int rows = HEIGHT / (drawer.height() + Positioner.SPACER) - 1;
+            for (int i = 0; i < labels; i++) {
+                int x = ref.x + i / rows * 160;
+                int y = ref.y + i % rows * (drawer.height() + Positioner.SPACER);
+                drawer.drawRight(text[i], new Rectangle(x, y, 0, drawer.height()));
+            }
+        };
+
+        LatencyHistogram frameTimes = new LatencyHistogram();
+        long period = fps > 0 ? 1_000_000_000L / fps : 0;
+        long begin = System.nanoTime();
+        FrameCapture capture = null;
+        if (mode.equals("async")) {
+            capture = new FrameCapture(dir, WIDTH, HEIGHT, format, policy, queue, workers);
+        } else if (!mode.equals("sync")) {
+            BenchArgs.usage("mode must be sync or async, got " + mode);
+        }
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+        for (int frame = 0; frame < frames; frame++) {
+            long start = System.nanoTime();
+            if (capture != null) {
+                capture.capture(painter);
+            } else {
+                Graphics2D g = image.createGraphics();
+                g.setBackground(Color.WHITE);
+                g.clearRect(0, 0, WIDTH, HEIGHT);
+                painter.accept(g);
+                g.dispose();
+                ImageIO.write(image, "png", dir.resolve(String.format("frame-%06d.png", frame)).toFile());
+            }
+            long took = System.nanoTime() - start;
+            frameTimes.record(took);
+            if (took < period) {
+                Thread.sleep((period - took) / 1_000_000, (int) ((period - took) % 1_000_000));
+            }
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.printf("mode=%s frames=%d achieved fps=%.1f frame time %s%n", mode, frames, frames / seconds,
+                frameTimes.snapshot());
+        if (capture != null) {
+            capture.close();
+            System.out.printf("captured=%d dropped=%d encoded=%d failed=%d pooled images=%d%n", capture.captured(),
+                    capture.dropped(), capture.encoded(), capture.failed(), capture.pooledImages());
+            System.out.println("capture to file " + capture.encodeLatency().snapshot());
+        }
+
+        if (!keep) {
+            File[] files = dir.toFile().listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package gui.bench;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import gui.Components;
+import gui.DrawString;
+import gui.Positioner;
+
+/**
+ * End-to-end soak test: builds a panel with <code>Components</code> and
+ * <code>Positioner</code>, then paints it plus thousands of
+ * <code>DrawString</code> labels into a headless <code>BufferedImage</code> for
+ * a number of frames while the label text churns. Reports frames/s, p50/p99
+ * frame time and bytes allocated per frame, and exits with status 1 if any
+ * budget is exceeded.
+ * <p>
+ * Settings are <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java -Djava.awt.headless=true gui.bench.FrameSoak frames=600 labels=3000 churn=0.2 \
+ *     minFps=30 maxP99Ms=40 maxBytesPerFrame=4000000
+ * </pre>
+ *
+ * Budgets that are not given are not checked.
+ */
+public class FrameSoak {
+    private static final int ROWS = 40;
+    private static final int COLUMNS = 8;
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs settings = BenchArgs.parse(args, "frames", "warmup", "labels", "churn", "seed", "minFps",
+                "maxP99Ms", "maxBytesPerFrame");
+
+        int frames = settings.getInt("frames", 600);
+        int warmup = settings.getInt("warmup", 100);
+        int labels = settings.getInt("labels", 3000);
+        double churn = settings.getDouble("churn", 0.1);
+        long seed = settings.getLong("seed", 1);
+        if (frames < 1 || warmup < 0) {
+            BenchArgs.usage("frames must be at least 1 and warmup at least 0");
+        }
+
+        double minFps = settings.getDouble("minFps", 0);
+        double maxP99Ms = settings.getDouble("maxP99Ms", 0);
+        long maxBytesPerFrame = settings.getLong("maxBytesPerFrame", 0);
+
+        long[][] res = new long[1][];
+        SwingUtilities.invokeAndWait(() -> res[0] = run(frames, warmup, labels, churn, seed));
+        long[] frameNanos = res[0];
+        long allocated = frameNanos[frameNanos.length - 1];
+        frameNanos = Arrays.copyOf(frameNanos, frameNanos.length - 1);
+
+        long total = 0;
+        for (long nanos : frameNanos) {
+            total += nanos;
+        }
+        Arrays.sort(frameNanos);
+        double fps = frames / (total / 1e9);
+        double p50 = frameNanos[(int) (0.50 * (frames - 1))] / 1e6;
+        double p99 = frameNanos[(int) (0.99 * (frames - 1))] / 1e6;
+        long bytesPerFrame = allocated < 0 ? -1 : allocated / frames;
+
+        System.out.printf("frames=%d labels=%d churn=%.2f%n", frames, labels, churn);
+        System.out.printf("fps=%.1f p50=%.2fms p99=%.2fms bytes/frame=%s%n",
+                fps, p50, p99, bytesPerFrame < 0 ? "unsupported" : Long.toString(bytesPerFrame));
+
+        boolean failed = false;
+        if (minFps > 0 && fps < minFps) {
+            System.out.printf("FAIL fps %.1f < %.1f%n", fps, minFps);
+            failed = true;
+        }
+        if (maxP99Ms > 0 && p99 > maxP99Ms) {
+            System.out.printf("FAIL p99 %.2fms > %.2fms%n", p99, maxP99Ms);
+            failed = true;
+        }
+        if (maxBytesPerFrame > 0 && bytesPerFrame > maxBytesPerFrame) {
+            System.out.printf("FAIL bytes/frame %d > %d%n", bytesPerFrame, maxBytesPerFrame);
+            failed = true;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Runs on the EDT so the allocation count covers everything painting does
+     *
+     * @return Nanoseconds per measured frame, followed by the bytes allocated over
+     *         all measured frames (-1 if unsupported)
+     */
+    private static long[] run(int frames, int warmup, int labels, double churn, long seed) {
+        Random random = new Random(seed);
+
+        // Build a grid of fields and buttons the way an app would
+        JPanel panel = new JPanel(null);
+        ActionListener ignore = e -> {};
+        Rectangle first = Positioner.topLeft(new Rectangle(0, 0, 4000, 4000));
+        JComponent[] anchors = new JComponent[ROWS * COLUMNS];
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLUMNS; col++) {
+                Rectangle bounds;
+                if (col > 0) {
+                    bounds = Positioner.right(anchors[row * COLUMNS + col - 1], Positioner.WIDTH, Positioner.HEIGHT,
+                            Positioner.SPACER * 12);
+                } else if (row > 0) {
+                    bounds = Positioner.under(anchors[(row - 1) * COLUMNS]);
+                } else {
+                    bounds = first;
+                }
+
+                anchors[row * COLUMNS + col] = col % 2 == 0
+                    ? Components.textField(bounds, panel)
+                    : Components.button("B" + row + "." + col, bounds, panel, ignore);
+            }
+        }
+        Component last = anchors[anchors.length - 1];
+        Dimension size = new Dimension(last.getX() + last.getWidth() + 200, last.getY() + last.getHeight() + 50);
+        panel.setSize(size);
+
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+
+        // Label text: a mix of plain, tabbed and multi-line captions
+        String[] text = new String[labels];
+        for (int i = 0; i < labels; i++) {
+            text[i] = label(i, random);
+        }
+        int churned = (int) Math.round(churn * labels);
+
+        com.sun.management.ThreadMXBean threads = threadBean();
+        long thread = Thread.currentThread().getId();
+
+        long[] res = new long[frames + 1];
+        long allocatedStart = 0;
+        for (int frame = -warmup; frame < frames; frame++) {
+            if (frame == 0 && threads != null) {
+                allocatedStart = threads.getThreadAllocatedBytes(thread);
+            }
+            long start = System.nanoTime();
+
+            for (int i = 0; i < churned; i++) {
+                int which = random.nextInt(labels);
+                text[which] = label(which, random);
+            }
+
+            Graphics2D g = image.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, size.width, size.height);
+            panel.paint(g);
+
+            g.setColor(Color.BLACK);
+            DrawString drawer = new DrawString(g);
+            for (int i = 0; i < labels; i++) {
+                JComponent anchor = anchors[i % anchors.length];
+                Rectangle ref = anchor.getBounds();
+                // Stack labels that share an anchor
+                ref.translate(0, (i / anchors.length) % 3 * drawer.height());
+                drawer.drawRight(text[i], ref);
+            }
+            g.dispose();
+
+            if (frame >= 0) {
+                res[frame] = System.nanoTime() - start;
+            }
+        }
+        res[frames] = threads == null ? -1 : threads.getThreadAllocatedBytes(thread) - allocatedStart;
+
+        return res;
+    }
+
+    private static String label(int i, Random random) {
+        switch (i % 4) {
+        case 0:
+            return "Value " + i + ": " + random.nextInt(100000);
+        case 1:
+            return "T" + i + "\t" + random.nextInt(1000) + "\tms";
+        case 2:
+            return "Line " + i + "\n" + random.nextDouble();
+        default:
+            return Integer.toString(random.nextInt());
+        }
+    }
+
+    /**
+     * @return Thread bean with allocation counting enabled, or <code>null</code> if
+     *         this JVM cannot count allocations
+     */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean res = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!res.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        res.setThreadAllocatedMemoryEnabled(true);
+        return res;
+    }
+}
@@ -0,0 +1,135 @@
+package gui.bench;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import gui.DrawString;
+
+/**
+ * Text measurement on ASCII, Latin-1 and mixed-script corpora:
+ * <code>DrawString.width</code> (which takes the Latin-1 fast path where it
+ * can) against plain <code>FontMetrics.stringWidth</code>. First checks both
+ * give the same width for every string in several fonts, styles, sizes and
+ * hints, and exits with status 1 if not. Settings are <code>key=value</code>
+ * arguments:
+ *
+ * <pre>
+ * java gui.bench.Latin1Bench strings=20000 rounds=20
+ * </pre>
+ */
+public class Latin1Bench {
+    private static final String[] FAMILIES = { Font.SANS_SERIF, Font.SERIF, Font.MONOSPACED, Font.DIALOG };
+
+    public static void main(String[] args) {
+        BenchArgs settings = BenchArgs.parse(args, "strings", "rounds", "seed");
+        int strings = settings.getInt("strings", 20000);
+        int rounds = settings.getInt("rounds", 20);
+        long seed = settings.getLong("seed", 1);
+
+        Random random = new Random(seed);
+        String[][] corpora = {
+            corpus(strings, random, 0),
+            corpus(strings, random, 1),
+            corpus(strings, random, 2),
+        };
+        String[] names = { "ascii", "latin1", "mixed" };
+
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+
+        // Same widths everywhere, fast path or not
+        int checked = 0;
+        for (String family : FAMILIES) {
+            for (int style = Font.PLAIN; style <= (Font.BOLD | Font.ITALIC); style++) {
+                for (int size = 9; size <= 24; size += 5) {
+                    for (Object aa : new Object[] { RenderingHints.VALUE_TEXT_ANTIALIAS_OFF, RenderingHints.VALUE_TEXT_ANTIALIAS_ON }) {
+                        for (Object fm : new Object[] { RenderingHints.VALUE_FRACTIONALMETRICS_OFF, RenderingHints.VALUE_FRACTIONALMETRICS_ON }) {
+                            g.setFont(new Font(family, style, size));
+                            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, aa);
+                            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fm);
+                            DrawString drawer = new DrawString(g);
+                            FontMetrics metrics = g.getFontMetrics();
+                            for (String[] corpus : corpora) {
+                                for (int i = 0; i < corpus.length; i += 7) {
+                                    if (drawer.width(corpus[i]) != metrics.stringWidth(corpus[i])) {
+                                        System.out.println("FAIL width of \"" + corpus[i] + "\" in " + g.getFont() + " " + aa + " " + fm);
+                                        System.exit(1);
+                                    }
+                                    checked++;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("widths match (" + checked + " checked)");
+
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        DrawString drawer = new DrawString(g);
+        FontMetrics metrics = g.getFontMetrics();
+
+        long sink = 0;
+        for (int c = 0; c < corpora.length; c++) {
+            String[] corpus = corpora[c];
+            long fast = Long.MAX_VALUE;
+            long plain = Long.MAX_VALUE;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                for (String text : corpus) {
+                    sink += drawer.width(text);
+                }
+                fast = Math.min(fast, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                for (String text : corpus) {
+                    sink += metrics.stringWidth(text);
+                }
+                plain = Math.min(plain, System.nanoTime() - start);
+            }
+            System.out.printf("%-6s DrawString.width=%.1fns stringWidth=%.1fns per string%n",
+                    names[c], fast / (double) corpus.length, plain / (double) corpus.length);
+        }
+        g.dispose();
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * @param kind 0 for ASCII, 1 for Latin-1 with accents, 2 for ASCII with 1 in
+     *             10 strings holding other scripts
+     * @return Caption-like strings of 5 to 40 chars
+     */
+    private static String[] corpus(int n, Random random, int kind) {
+        String[] res = new String[n];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.setLength(0);
+            int length = 5 + random.nextInt(36);
+            boolean foreign = kind == 2 && i % 10 == 0;
+            for (int j = 0; j < length; j++) {
+                int r = random.nextInt(100);
+                if (r < 15) {
+                    sb.append(' ');
+                } else if (kind == 1 && r < 25) {
+                    sb.append((char) (0xC0 + random.nextInt(0x40)));
+                } else if (foreign && r < 40) {
+                    // CJK, Arabic (bidi) or a combining accent
+                    char[] other = { (char) (0x4E00 + random.nextInt(500)), (char) (0x0627 + random.nextInt(20)), '\u0301' };
+                    sb.append(other[random.nextInt(other.length)]);
+                } else {
+                    sb.append((char) ('!' + random.nextInt(94)));
+                }
+            }
+            res[i] = sb.toString();
+        }
+        return res;
+    }
+}
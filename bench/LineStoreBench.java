@@ -0,0 +1,89 @@
+package gui.bench;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import gui.LineMetricsStore;
+
+/**
+ * Fills a <code>LineMetricsStore</code> with synthetic line metrics, checks
+ * lookups against what was appended, and reports append and lookup times, heap
+ * used and off-heap bytes. Exits with status 1 if a lookup is wrong. Settings
+ * are <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java -XX:MaxDirectMemorySize=4g gui.bench.LineStoreBench lines=100000000 store=direct lookups=1000000
+ * java gui.bench.LineStoreBench lines=100000000 store=mmap
+ * </pre>
+ */
+public class LineStoreBench {
+    public static void main(String[] args) throws Exception {
+        BenchArgs settings = BenchArgs.parse(args, "lines", "store", "lookups");
+        long lines = settings.getLong("lines", 10_000_000L);
+        String store = settings.get("store", "direct");
+        int lookups = settings.getInt("lookups", 1_000_000);
+
+        Path spill = store.equals("mmap") ? Files.createTempFile("lines", ".bin") : null;
+        long heapBefore = heapUsed();
+
+        try (LineMetricsStore metrics = spill == null ? new LineMetricsStore() : new LineMetricsStore(spill)) {
+            // Line i is 20 + i % 80 chars, 7px each, wrapped at 400px
+            long start = System.nanoTime();
+            long offset = 0;
+            for (long i = 0; i < lines; i++) {
+                int chars = 20 + (int) (i % 80);
+                int width = 7 * chars;
+                metrics.append(offset, width, (width + 399) / 400);
+                offset += chars + 1;
+            }
+            double appendNs = (System.nanoTime() - start) / (double) lines;
+            long heapAfter = heapUsed();
+
+            Random random = new Random(1);
+            long totalRows = metrics.totalRows();
+            long sink = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                long row = (random.nextLong() & Long.MAX_VALUE) % totalRows;
+                long line = metrics.lineAtRow(row);
+                if (metrics.firstRow(line) > row || metrics.firstRow(line) + metrics.rows(line) <= row) {
+                    System.out.println("FAIL row " + row + " gave line " + line);
+                    System.exit(1);
+                }
+                sink += line;
+            }
+            double rowNs = (System.nanoTime() - start) / (double) lookups;
+
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                long at = (random.nextLong() & Long.MAX_VALUE) % offset;
+                long line = metrics.lineAtOffset(at);
+                if (metrics.offset(line) > at || (line + 1 < lines && metrics.offset(line + 1) <= at)) {
+                    System.out.println("FAIL offset " + at + " gave line " + line);
+                    System.exit(1);
+                }
+                sink += line;
+            }
+            double offsetNs = (System.nanoTime() - start) / (double) lookups;
+
+            System.out.printf("store=%s lines=%d rows=%d maxWidth=%d%n", store, lines, totalRows, metrics.maxWidth());
+            System.out.printf("append=%.1fns lineAtRow=%.1fns lineAtOffset=%.1fns%n", appendNs, rowNs, offsetNs);
+            System.out.printf("off-heap=%dMB heap growth=%dMB%n", metrics.offHeapBytes() >> 20,
+                    Math.max(0, heapAfter - heapBefore) >> 20);
+            if (sink == 42) {
+                System.out.println();
+            }
+        } finally {
+            if (spill != null) {
+                Files.delete(spill);
+            }
+        }
+    }
+
+    private static long heapUsed() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,91 @@
+package gui.bench;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import gui.DrawString;
+
+/**
+ * Bytes allocated and time per <code>drawString</code> and
+ * <code>drawRight</code> of escaped text (tabs, <code>\f</code>,
+ * <code>\b</code>, <code>\r</code> and newlines), once drawn and once clipped
+ * away so that only parsing and layout are left. Settings are
+ * <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java gui.bench.ParseBench calls=200000 maxClippedBytes=0
+ * </pre>
+ *
+ * With <code>maxClippedBytes</code> above 0, exits with status 1 if a clipped
+ * call allocates more than that on average
+ */
+public class ParseBench {
+    private static final String[] TEXTS = {
+        "Name\tValue\tUnit\nload\t0.75\t%\nup\t12\td",
+        "Total:\f  1234\f  5678",
+        "progress 10%\r progress 90%\nretry\b\b\b\b\bRETRY",
+        "A single plain caption",
+    };
+
+    public static void main(String[] args) {
+        BenchArgs settings = BenchArgs.parse(args, "calls", "maxClippedBytes");
+        int calls = settings.getInt("calls", 200000);
+        long maxClippedBytes = settings.getLong("maxClippedBytes", 0);
+        if (calls < 1) {
+            BenchArgs.usage("calls must be at least 1");
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            BenchArgs.usage("This JVM cannot count allocated bytes");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        DrawString drawer = new DrawString(g);
+        Rectangle ref = new Rectangle(150, 80, 100, 40);
+
+        boolean failed = false;
+        for (boolean clipped : new boolean[] { false, true }) {
+            g.setClip(clipped ? new Rectangle(-100, -100, 1, 1) : null);
+            for (int op = 0; op < 2; op++) {
+                // Warm up, then measure
+                run(drawer, ref, op, calls / 4);
+                long allocated = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                run(drawer, ref, op, calls);
+                long took = System.nanoTime() - start;
+                allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+                double bytes = allocated / (double) calls;
+                System.out.printf("%-10s %-7s %.1f bytes/call %.0fns/call%n", op == 0 ? "drawString" : "drawRight",
+                        clipped ? "clipped" : "drawn", bytes, took / (double) calls);
+                if (clipped && maxClippedBytes > 0 && bytes > maxClippedBytes) {
+                    System.out.println("FAIL over maxClippedBytes=" + maxClippedBytes);
+                    failed = true;
+                }
+            }
+        }
+        g.dispose();
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static void run(DrawString drawer, Rectangle ref, int op, int calls) {
+        for (int i = 0; i < calls; i++) {
+            String text = TEXTS[i % TEXTS.length];
+            if (op == 0) {
+                drawer.drawString(text, 10, 10);
+            } else {
+                drawer.drawRight(text, ref);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package gui.bench;
+
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+import gui.LayoutBinder;
+import gui.Positioner;
+
+/**
+ * Resize storm: a grid of fields, each positioned against its neighbour with
+ * <code>Positioner</code>, while the top-left field is resized as fast as a
+ * window drag would (one event every <code>intervalMicros</code>). Compares
+ * re-running each rule straight from a <code>ComponentListener</code> with
+ * <code>LayoutBinder</code>, reporting EDT CPU time and rule evaluations until
+ * the layout settles. Settings are <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java gui.bench.ResizeStorm rows=40 columns=8 events=2000 intervalMicros=500
+ * </pre>
+ */
+public class ResizeStorm {
+    public static void main(String[] args) throws Exception {
+        BenchArgs settings = BenchArgs.parse(args, "rows", "columns", "events", "intervalMicros");
+
+        int rows = settings.getInt("rows", 40);
+        int columns = settings.getInt("columns", 8);
+        int events = settings.getInt("events", 2000);
+        int intervalMicros = settings.getInt("intervalMicros", 500);
+
+        // Warm up both so JIT does not favour the second
+        storm(false, rows, columns, events / 4, intervalMicros, false);
+        storm(true, rows, columns, events / 4, intervalMicros, false);
+
+        System.out.printf("rows=%d columns=%d events=%d interval=%dus%n", rows, columns, events, intervalMicros);
+        Rectangle naive = storm(false, rows, columns, events, intervalMicros, true);
+        Rectangle bound = storm(true, rows, columns, events, intervalMicros, true);
+        if (!naive.equals(bound)) {
+            System.out.println("FAIL layouts differ: " + naive + " vs " + bound);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return Final bounds of the last field, to check both ways agree
+     */
+    private static Rectangle storm(boolean useBinder, int rows, int columns, int events, int intervalMicros,
+            boolean report) throws Exception {
+        JPanel panel = new JPanel(null);
+        Component[] grid = new Component[rows * columns];
+        AtomicLong evaluations = new AtomicLong();
+        LayoutBinder[] binder = new LayoutBinder[1];
+
+        SwingUtilities.invokeAndWait(() -> {
+            binder[0] = new LayoutBinder();
+            for (int i = 0; i < grid.length; i++) {
+                grid[i] = new JTextField();
+                panel.add(grid[i]);
+            }
+            grid[0].setBounds(Positioner.SPACER, Positioner.SPACER, Positioner.WIDTH, Positioner.HEIGHT);
+
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    if (row == 0 && col == 0) {
+                        continue;
+                    }
+                    Component ref = col > 0 ? grid[row * columns + col - 1] : grid[(row - 1) * columns];
+                    Function<Component, Rectangle> rule = col > 0 ? Positioner::right : Positioner::under;
+                    Function<Component, Rectangle> counted = c -> {
+                        evaluations.incrementAndGet();
+                        return rule.apply(c);
+                    };
+                    Component dependent = grid[row * columns + col];
+
+                    if (useBinder) {
+                        binder[0].bind(dependent, ref, counted);
+                    } else {
+                        // What a hand-written listener would do
+                        dependent.setBounds(counted.apply(ref));
+                        ref.addComponentListener(new ComponentAdapter() {
+                            @Override
+                            public void componentMoved(ComponentEvent e) {
+                                dependent.setBounds(counted.apply(ref));
+                            }
+
+                            @Override
+                            public void componentResized(ComponentEvent e) {
+                                dependent.setBounds(counted.apply(ref));
+                            }
+                        });
+                    }
+                }
+            }
+        });
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] edt = new long[1];
+        SwingUtilities.invokeAndWait(() -> edt[0] = Thread.currentThread().getId());
+        evaluations.set(0);
+        long cpuStart = threads.getThreadCpuTime(edt[0]);
+
+        // The drag: grow and shrink the first field
+        for (int i = 0; i < events; i++) {
+            int step = i % 100;
+            SwingUtilities.invokeLater(() -> grid[0].setSize(Positioner.WIDTH + step, Positioner.HEIGHT + step / 2));
+            long until = System.nanoTime() + intervalMicros * 1000L;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+        }
+
+        // Let queued events and the last frame settle
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(50);
+            SwingUtilities.invokeAndWait(() -> {});
+        }
+        long cpu = threads.getThreadCpuTime(edt[0]) - cpuStart;
+
+        if (report) {
+            System.out.printf("%-9s edtCpu=%.1fms evaluations=%d%n",
+                    useBinder ? "binder" : "listeners", cpu / 1e6, evaluations.get());
+        }
+
+        Rectangle[] res = new Rectangle[1];
+        SwingUtilities.invokeAndWait(() -> res[0] = grid[grid.length - 1].getBounds());
+        return res[0];
+    }
+}
@@ -0,0 +1,171 @@
+package gui.bench;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gui.DrawString;
+import gui.LayoutSnapshot;
+import gui.Positioner;
+import gui.TextMetricsCache;
+import gui.util.Direction;
+import gui.util.Justify;
+import gui.util.Positional;
+
+/**
+ * Cold versus snapshot-warm startup: time to lay out and draw a first frame of
+ * thousands of static captions, with and without a <code>LayoutSnapshot</code>
+ * from a previous launch.
+ * <p>
+ * Each launch is a fresh JVM, so JIT and font caches are as cold as in a real
+ * start. Settings are <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java gui.bench.StartupBench captions=4000 runs=5 file=/tmp/layout.snapshot
+ * </pre>
+ *
+ * <code>mode=cold</code> or <code>mode=warm</code> runs a single launch in this
+ * JVM instead (cold deletes the snapshot first; both save it afterwards)
+ */
+public class StartupBench {
+    public static void main(String[] args) throws Exception {
+        BenchArgs settings = BenchArgs.parse(args, "mode", "captions", "runs", "file");
+
+        String mode = settings.get("mode", "compare");
+        int captions = settings.getInt("captions", 4000);
+        int runs = settings.getInt("runs", 5);
+        Path file = Paths.get(settings.get("file",
+                System.getProperty("java.io.tmpdir") + File.separator + "gui-startup.snapshot"));
+
+        switch (mode) {
+        case "cold":
+            Files.deleteIfExists(file);
+            launch(captions, file);
+            break;
+
+        case "warm":
+            launch(captions, file);
+            break;
+
+        case "compare":
+            double[] cold = new double[runs];
+            double[] warm = new double[runs];
+            for (int i = 0; i < runs; i++) {
+                cold[i] = child("cold", captions, file);
+                warm[i] = child("warm", captions, file);
+            }
+            Arrays.sort(cold);
+            Arrays.sort(warm);
+            System.out.printf("captions=%d runs=%d snapshot=%d bytes%n", captions, runs, Files.size(file));
+            System.out.printf("cold median=%.1fms min=%.1fms%n", cold[runs / 2], cold[0]);
+            System.out.printf("warm median=%.1fms min=%.1fms%n", warm[runs / 2], warm[0]);
+            break;
+
+        default:
+            BenchArgs.usage("Unknown mode " + mode);
+        }
+    }
+
+    /**
+     * One launch: lay out and draw the first frame, then save the snapshot
+     */
+    private static void launch(int captions, Path file) throws Exception {
+        long start = System.nanoTime();
+
+        BufferedImage image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+
+        TextMetricsCache widths = TextMetricsCache.of(g);
+        LayoutSnapshot snapshot = LayoutSnapshot.load(file, widths);
+        DrawString drawer = new DrawString(g, widths);
+        long loaded = System.nanoTime();
+
+        // Captions beside a column of fields, measured through DrawString
+        Rectangle field = new Rectangle(Positioner.SPACER, Positioner.SPACER, Positioner.WIDTH, Positioner.HEIGHT);
+        Positional beside = new Positional(Direction.RIGHT, Justify.START);
+        Rectangle[] bounds = new Rectangle[captions];
+        String[] text = new String[captions];
+        for (int i = 0; i < captions; i++) {
+            String caption = caption(i);
+            Rectangle ref = new Rectangle(field.x, field.y + (i % 40) * Positioner.HEIGHT, field.width, field.height);
+            text[i] = caption;
+            bounds[i] = snapshot.layout(i % 40 + ":" + caption, () -> {
+                int width = 0;
+                for (String line : caption.split("\n")) {
+                    width = Math.max(width, drawer.width(line));
+                }
+                return Positioner.positioned(beside, ref, new Dimension(width, drawer.height()), Positioner.SPACER);
+            });
+        }
+        long laidOut = System.nanoTime();
+
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setColor(Color.BLACK);
+        for (int i = 0; i < captions; i++) {
+            drawer.drawString(text[i], bounds[i].x, bounds[i].y);
+        }
+        g.dispose();
+        long drawn = System.nanoTime();
+
+        snapshot.save(file);
+
+        System.out.printf("%s load=%.1fms layout=%.1fms draw=%.1fms firstFrame=%.1fms%n",
+                snapshot.loaded() ? "warm" : "cold",
+                (loaded - start) / 1e6, (laidOut - loaded) / 1e6, (drawn - laidOut) / 1e6, (drawn - start) / 1e6);
+    }
+
+    /**
+     * Run a launch in a new JVM
+     *
+     * @return First frame time in ms
+     */
+    private static double child(String mode, int captions, Path file) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                StartupBench.class.getName(), "mode=" + mode, "captions=" + captions, "file=" + file));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        String result = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                System.out.println("  " + line);
+                result = line;
+            }
+        }
+        if (process.waitFor() != 0 || result == null || !result.contains("firstFrame=")) {
+            throw new IllegalStateException(mode + " launch failed");
+        }
+        String ms = result.substring(result.indexOf("firstFrame=") + "firstFrame=".length(), result.length() - 2);
+        return Double.parseDouble(ms);
+    }
+
+    /**
+     * @return Static caption like an app's labels: plain, tabbed or two lines
+     */
+    private static String caption(int i) {
+        switch (i % 3) {
+        case 0:
+            return "Setting number " + i;
+        case 1:
+            return "Column " + i + "\tunits\tdefault";
+        default:
+            return "Threshold " + i + "\n(applies after restart)";
+        }
+    }
+}
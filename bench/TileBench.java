@@ -0,0 +1,108 @@
+package gui.bench;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+
+import gui.DrawString;
+import gui.TiledRenderer;
+
+/**
+ * Rendering a poster of text lines with <code>TiledRenderer</code> on 1, 2, 4
+ * ... up to <code>threads</code> workers, against painting it in one go on one
+ * <code>Graphics2D</code>. First checks the tiled poster has the same pixels
+ * as the one painted in one go, and exits with status 1 if not. Settings are
+ * <code>key=value</code> arguments:
+ *
+ * <pre>
+ * java gui.bench.TileBench width=8000 height=6000 tile=512 threads=8 rounds=5
+ * </pre>
+ *
+ * Speedup is only meaningful up to the number of cores (printed first)
+ */
+public class TileBench {
+    public static void main(String[] args) {
+        BenchArgs settings = BenchArgs.parse(args, "width", "height", "tile", "threads", "rounds");
+        int width = settings.getInt("width", 8000);
+        int height = settings.getInt("height", 6000);
+        int tile = settings.getInt("tile", 512);
+        int threads = settings.getInt("threads", 8);
+        int rounds = settings.getInt("rounds", 5);
+        if (width < 1 || height < 1 || tile < 1 || threads < 1 || rounds < 1) {
+            BenchArgs.usage("width, height, tile, threads and rounds must be at least 1");
+        }
+
+        // Columns of report lines filling the poster
+        int lineHeight = 14;
+        int columnWidth = 400;
+        String[][] columns = new String[(width + columnWidth - 1) / columnWidth][height / lineHeight];
+        for (int c = 0; c < columns.length; c++) {
+            for (int l = 0; l < columns[c].length; l++) {
+                columns[c][l] = "Host " + c + "-" + l + "  load " + (l * 31 + c) % 100 + "%  up " + l + "d";
+            }
+        }
+        // drawLines skips lines above and below the tile; columns beside it
+        // are skipped here
+        BiConsumer<Graphics2D, Rectangle> painter = (g, bounds) -> {
+            g.setColor(Color.WHITE);
+            g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+            g.setColor(Color.BLACK);
+            g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            DrawString drawer = new DrawString(g);
+            int last = Math.min(columns.length - 1, (bounds.x + bounds.width - 1) / columnWidth);
+            for (int c = bounds.x / columnWidth; c <= last; c++) {
+                drawer.drawLines(columns[c], c * columnWidth + 5, lineHeight);
+            }
+        };
+        Rectangle all = new Rectangle(0, 0, width, height);
+
+        BufferedImage whole = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        BufferedImage tiled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = whole.createGraphics();
+        painter.accept(g, all);
+        g.dispose();
+        new TiledRenderer(ForkJoinPool.commonPool(), tile).render(tiled, painter);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (whole.getRGB(x, y) != tiled.getRGB(x, y)) {
+                    System.out.println("FAIL tiled poster differs at " + x + "," + y);
+                    System.exit(1);
+                }
+            }
+        }
+        int lines = columns.length * columns[0].length;
+        System.out.printf("cores=%d poster %dx%d, %d lines, tiles of %d: same pixels tiled%n",
+                Runtime.getRuntime().availableProcessors(), width, height, lines, tile);
+
+        double single = best(rounds, () -> {
+            Graphics2D one = whole.createGraphics();
+            painter.accept(one, all);
+            one.dispose();
+        });
+        System.out.printf("one graphics: %.1fms%n", single);
+        for (int n = 1; n <= threads; n *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(n);
+            TiledRenderer renderer = new TiledRenderer(pool, tile);
+            double took = best(rounds, () -> renderer.render(tiled, painter));
+            pool.shutdown();
+            System.out.printf("tiled, %d threads: %.1fms (%.2fx one graphics)%n", n, took, single / took);
+        }
+    }
+
+    /**
+     * @return Milliseconds of the fastest of rounds runs
+     */
+    private static double best(int rounds, Runnable run) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+}
@@ -0,0 +1,34 @@
+package gui.util;
+
+/**
+ * How an animation moves from start to end over time: linear, or (cubic)
+ * easing in, out, or both
+ */
+public enum Easing {
+    LINEAR,
+    EASE_IN,
+    EASE_OUT,
+    EASE_IN_OUT;
+
+    /**
+     * @param t Fraction of the duration, 0 to 1
+     * @return Fraction of the distance covered, 0 to 1
+     */
+    public double apply(double t) {
+        switch (this) {
+        case EASE_IN:
+            return t * t * t;
+        case EASE_OUT:
+            double u = 1 - t;
+            return 1 - u * u * u;
+        case EASE_IN_OUT:
+            if (t < 0.5) {
+                return 4 * t * t * t;
+            }
+            double v = 2 - 2 * t;
+            return 1 - v * v * v / 2;
+        default:
+            return t;
+        }
+    }
+}
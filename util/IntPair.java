@@ -0,0 +1,51 @@
+package gui.util;
+
+/**
+ * Immutable 2-tuple of ints (e.g. an (x, y) position) without boxing
+ */
+public final class IntPair {
+    private final int val0;
+    private final int val1;
+
+    public IntPair(int val0, int val1) {
+        this.val0 = val0;
+        this.val1 = val1;
+    }
+
+    public int get0() {
+        return val0;
+    }
+
+    public int get1() {
+        return val1;
+    }
+
+    /**
+     * @return Both values packed into a long (see <code>LongPacked</code>)
+     */
+    public long packed() {
+        return LongPacked.pack(val0, val1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IntPair)) {
+            return false;
+        }
+        IntPair other = (IntPair) o;
+        return val0 == other.val0 && val1 == other.val1;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * val0 + val1;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + val0 + ", " + val1 + ")";
+    }
+}
@@ -0,0 +1,161 @@
+package gui.util;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe latency histogram with power of two buckets. Recording is a few
+ * <code>LongAdder</code> increments, so it is cheap even under contention.
+ * Percentiles are reported as the upper bound of the bucket they fall in
+ */
+public final class LatencyHistogram {
+    /**
+     * Bucket i holds latencies in [2^(i-1), 2^i) nanoseconds; bucket 0 holds 0
+     */
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos Latency to record
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Clear everything recorded so far
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * @return Number of latencies recorded
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return Sum of all latencies recorded
+     */
+    public long totalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * @param p Fraction in [0, 1] (e.g. 0.99)
+     * @return Upper bound of the latency at fraction p, or 0 if nothing is recorded
+     */
+    public long percentile(double p) {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            n += counts[i];
+        }
+        return percentile(counts, n, p);
+    }
+
+    /**
+     * @return Summary of everything recorded so far. Concurrent recording may make
+     *         the fields very slightly inconsistent with each other
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            n += counts[i];
+        }
+        return new Snapshot(n, total.sum(), max.get(),
+                percentile(counts, n, 0.5), percentile(counts, n, 0.9), percentile(counts, n, 0.99));
+    }
+
+    private static long percentile(long[] counts, long n, double p) {
+        long rank = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Immutable summary of a histogram. The getters make it usable as an MXBean
+     * attribute
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+
+        @ConstructorProperties({ "count", "totalNanos", "maxNanos", "p50Nanos", "p90Nanos", "p99Nanos" })
+        public Snapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " total=" + totalNanos + "ns max=" + maxNanos
+                + "ns p50<=" + p50Nanos + "ns p90<=" + p90Nanos + "ns p99<=" + p99Nanos + "ns";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package gui.util;
+
+/**
+ * Two ints packed into one long. Nothing is allocated, so packed pairs can be
+ * passed around, stored in <code>long[]</code>s and compared with
+ * <code>==</code>
+ */
+public final class LongPacked {
+    private LongPacked() {
+    }
+
+    /**
+     * @param val0 High int
+     * @param val1 Low int
+     * @return val0 and val1 packed into a long
+     */
+    public static long pack(int val0, int val1) {
+        return ((long) val0 << 32) | (val1 & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param packed Result of <code>pack</code>
+     * @return The first (high) int
+     */
+    public static int get0(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * @param packed Result of <code>pack</code>
+     * @return The second (low) int
+     */
+    public static int get1(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * @param packed Result of <code>pack</code>
+     * @return Well mixed hash of both ints
+     */
+    public static int hash(long packed) {
+        packed ^= packed >>> 33;
+        packed *= 0xff51afd7ed558ccdL;
+        packed ^= packed >>> 33;
+        return (int) packed;
+    }
+}